@@ -0,0 +1,63 @@
+package red.vivid.reversi.bench;
+
+import red.vivid.reversi.*;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+	AI.selectを端から端まで測るベンチマーク<br>
+	時間ではなく深さで探索を止めるので、同じ局面なら毎回同じだけ読みます<br>
+	置換表が前の局面の結果を引きずらないように、局面ごとにAIを作り直します
+	@author vividorange
+*/
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+@State(Scope.Thread)
+public class AIBench
+{
+	/** 局面の数 */
+	private static final int SIZE = 16;
+
+	/** midgameは空き36マスを深さで、endgameは空き16マスを完全読みで読む */
+	@Param({"midgame", "endgame"})
+	public String phase;
+	/** 中盤の探索の深さ */
+	@Param({"6"})
+	public int depth;
+
+	private Corpus corpus;
+	/** 次に読む局面の番号 */
+	private int index;
+	private AI ai;
+	private BitBoard board;
+
+	@Setup(Level.Trial)
+	public void setUp()
+	{
+		corpus = phase.equals("endgame")?
+			new Corpus(20160402L, 16, SIZE):
+			new Corpus(20160403L, 36, SIZE);
+	}
+
+	@Setup(Level.Invocation)
+	public void next()
+	{
+		int i = index++ % SIZE;
+		board = corpus.boards[i];
+		// 時間切れでは止まらないようにする
+		ai = new AI(corpus.colors[i], 3600 * 1000L);
+		ai.setMaxDepth(depth);
+		ai.setHashSize(16);
+	}
+
+	@Benchmark
+	public void select(Blackhole bh)
+	{
+		bh.consume(ai.selectPos(board));
+		bh.consume(ai.getNodes());
+	}
+}
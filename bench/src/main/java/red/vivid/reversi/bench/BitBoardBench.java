@@ -0,0 +1,122 @@
+package red.vivid.reversi.bench;
+
+import red.vivid.reversi.*;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+	BitBoardの基本操作のベンチマーク<br>
+	1回の呼び出しでCorpusのすべての局面を1度ずつ処理し、1局面あたりの時間を報告します
+	@author vividorange
+*/
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class BitBoardBench
+{
+	/** 局面の数 */
+	private static final int SIZE = 256;
+
+	/** 空きマス数 */
+	@Param({"50", "30", "14"})
+	public int empties;
+
+	private BitBoard[] boards;
+	private boolean[] colors;
+	/** 手番の石 */
+	private long[] my;
+	/** 相手の石 */
+	private long[] opp;
+	/** 局面ごとの合法手の1つ(ビット位置) */
+	private int[] moves;
+	/** putStoneで書き換える作業用のボード */
+	private BitBoard work;
+
+	@Setup(Level.Trial)
+	public void setUp()
+	{
+		Corpus corpus = new Corpus(20160401L + empties, empties, SIZE);
+		boards = corpus.boards;
+		colors = corpus.colors;
+		my = new long[SIZE];
+		opp = new long[SIZE];
+		moves = new int[SIZE];
+		for(int i=0;i<SIZE;++i)
+		{
+			BitBoard b = boards[i];
+			my[i] = colors[i] == Rule.BLACK ? b.black : b.white;
+			opp[i] = colors[i] == Rule.BLACK ? b.white : b.black;
+			long mobility = b.getMobility(colors[i]);
+			// 真ん中あたりの合法手を選ぶ
+			for(int j=Long.bitCount(mobility)/2;j>0;--j)mobility &= mobility - 1;
+			moves[i] = Long.numberOfTrailingZeros(mobility);
+		}
+		work = new BitBoard(0, 0);
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(SIZE)
+	public void getReversiblePos(Blackhole bh)
+	{
+		for(int i=0;i<SIZE;++i)
+		{
+			bh.consume(BitBoard.getReversiblePos(my[i], opp[i]));
+		}
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(SIZE)
+	public void getReverseBit(Blackhole bh)
+	{
+		for(int i=0;i<SIZE;++i)
+		{
+			bh.consume(BitBoard.getReverseBit(my[i], opp[i], 1L << moves[i]));
+		}
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(SIZE)
+	public void getReversibleCells(Blackhole bh)
+	{
+		for(int i=0;i<SIZE;++i)
+		{
+			bh.consume(boards[i].getReversibleCells(colors[i]));
+		}
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(SIZE)
+	public void putStone(Blackhole bh)
+	{
+		for(int i=0;i<SIZE;++i)
+		{
+			work.set(boards[i]);
+			bh.consume(work.putStone(colors[i], moves[i]));
+			bh.consume(work.black);
+		}
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(SIZE)
+	public void isFinished(Blackhole bh)
+	{
+		for(int i=0;i<SIZE;++i)
+		{
+			bh.consume(boards[i].isFinished());
+		}
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(SIZE)
+	public void getStoneCount(Blackhole bh)
+	{
+		for(int i=0;i<SIZE;++i)
+		{
+			bh.consume(boards[i].getStoneCount(colors[i]));
+		}
+	}
+}
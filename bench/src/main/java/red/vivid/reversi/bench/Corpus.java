@@ -0,0 +1,52 @@
+package red.vivid.reversi.bench;
+
+import red.vivid.reversi.*;
+import java.util.Random;
+
+/**
+	ベンチマークに使う局面の集まり<br>
+	種を固定したランダムな対局から作るので、いつ作っても同じ局面になります
+	@author vividorange
+*/
+public class Corpus
+{
+	/** 局面 */
+	public final BitBoard[] boards;
+	/** 局面ごとの手番の色 */
+	public final boolean[] colors;
+
+	/**
+		空きマス数を指定して局面を作ります<br>
+		手番に合法手がある局面だけを集めます
+		@param seed 乱数の種
+		@param empties 空きマス数
+		@param count 局面の数
+	*/
+	public Corpus(long seed, int empties, int count)
+	{
+		boards = new BitBoard[count];
+		colors = new boolean[count];
+		Random random = new Random(seed);
+		int n = 0;
+		while(n < count)
+		{
+			BitBoard board = new BitBoard();
+			boolean color = Rule.BLACK;
+			while(board.getEmptyCount() > empties && !board.isFinished())
+			{
+				long mobility = board.getMobility(color);
+				if(mobility != 0)
+				{
+					int rnd = random.nextInt(Long.bitCount(mobility));
+					for(;rnd>0;--rnd)mobility &= mobility - 1;
+					board.putStone(color, Long.numberOfTrailingZeros(mobility));
+				}
+				color = !color;
+			}
+			if(board.getEmptyCount() != empties || board.getMobility(color) == 0)continue;
+			boards[n] = board;
+			colors[n] = color;
+			++n;
+		}
+	}
+}
@@ -1,6 +0,0 @@
-cd src
-for /l %%a in (1, 1, 50) do (
- java RandomReversi
- java RandomReversi a
-)
-exit
\ No newline at end of file
@@ -0,0 +1,41 @@
+import red.vivid.reversi.*;
+import java.io.IOException;
+import java.nio.file.*;
+
+/**
+	初期局面から定跡を作って、定跡のファイルに書き出す<br>
+	途中経過を出力のファイル名に.ckptを付けたファイルに書き出すので、止めてももう一度起動すれば続きから作ります
+	@author vividorange
+*/
+public class BookReversi
+{
+	/**
+		起動時に呼ばれます<br>
+		java BookReversi [出力] [ノード数] [深さ] [窓(石差)] [手数] [スレッド数]<br>
+		出力は -Dred.vivid.reversi.book で指定すればAIが使います
+		@param args 引数
+		@throws IOException 読み書きできないとき
+	*/
+	public static void main(String[] args) throws IOException
+	{
+		Path output = Paths.get(args.length > 0 ? args[0] : "../book.bin");
+		int maxNodes = args.length > 1 ? Integer.parseInt(args[1]) : 10000;
+
+		BookBuilder builder = new BookBuilder();
+		if(args.length > 2)builder.setDepth(Integer.parseInt(args[2]));
+		if(args.length > 3)builder.setWindow(Integer.parseInt(args[3]) * 100);
+		if(args.length > 4)builder.setMaxPly(Integer.parseInt(args[4]));
+		if(args.length > 5)builder.setThreads(Integer.parseInt(args[5]));
+		// 10分ごとにチェックポイントを書き出す
+		builder.setCheckpoint(output.resolveSibling(output.getFileName() + ".ckpt"), 600000);
+		if(builder.size() > 1)System.out.println(String.format("チェックポイントから続けます ノード数:%d", builder.size()));
+		// 途中経過を1行で上書きしながら表示する
+		builder.setProgress(p -> System.out.print("\r" + p));
+
+		BookBuilder.Progress result = builder.build(maxNodes);
+		builder.write(output);
+		System.out.println();
+		System.out.println(result);
+		System.out.println("書き出しました:" + output);
+	}
+}
@@ -0,0 +1,173 @@
+import red.vivid.reversi.*;
+import java.util.*;
+import java.io.*;
+
+/**
+	対局をコンソールに表示して、終局したら棋譜をファイルに書き出す
+	@author vividorange
+*/
+public class ConsoleListener implements GameListener
+{
+	/** 勝ち負けを記録するAI */
+	private final AI ai;
+	/** 棋譜ファイル名の先頭 */
+	private final String prefix;
+	/** AIが打ったときに深さとノード数と評価値を表示するか */
+	private boolean showStats;
+
+	/** 棋譜 */
+	private final List<String> history = new ArrayList<>();
+
+	/**
+		表示と棋譜の記録をするリスナーを生成します
+		@param ai 勝ち負けを記録するAI
+		@param prefix 棋譜ファイル名の先頭
+	*/
+	public ConsoleListener(AI ai, String prefix)
+	{
+		this.ai = ai;
+		this.prefix = prefix;
+	}
+	/**
+		AIが打ったときに深さとノード数と評価値を表示するかを設定します
+		@param showStats 表示するか
+	*/
+	public void setShowStats(boolean showStats)
+	{
+		this.showStats = showStats;
+	}
+	@Override
+	public void turnStarted(BitBoard board, boolean color)
+	{
+		System.out.println(String.format("======= %2d ========",board.getTurnCount()+1));
+		System.out.print(getBoardString(board));
+		System.out.println(String.format("\n%c のターンです",toChar(color)));
+		if(color == ai.color && board.getMobility(color) != 0)
+		{
+			System.out.println("思考中");
+		}
+	}
+	@Override
+	public void passed(BitBoard board, boolean color)
+	{
+		history.add(String.format("%c pass",toChar(color)));
+		System.out.println("置ける場所がないためパスします。");
+	}
+	@Override
+	public void illegalMove(BitBoard board, boolean color, int pos)
+	{
+		System.out.println("置けない場所です。打ちなおしてください");
+	}
+	@Override
+	public void moved(BitBoard board, boolean color, int pos, long elapsed)
+	{
+		String timeString = "";
+		if(color == ai.color)
+		{
+			// 棋譜データ
+			long elapsedTime = elapsed / 1000000;
+			int sec = (int)(elapsedTime/1000);
+			int msec = (int)(elapsedTime%1000);
+			timeString = String.format(":%d分%d秒%d",sec/60,sec%60,msec);
+			System.out.println(timeString);
+			if(showStats)
+			{
+				System.out.println(String.format("深さ:%d ノード数:%d 評価値:%d",ai.getDepth(),ai.getNodes(),ai.getScore()));
+			}
+		}
+		String cell = Game.toNotation(pos);
+		System.out.println(String.format("棋譜:%c は %s に打ちました\n",toChar(color),cell));
+
+		history.add(cell + timeString);
+		history.add(getBoardString(board));
+	}
+	@Override
+	public void finished(BitBoard board)
+	{
+		System.out.println("====================");
+		// 終わりました
+		System.out.println(getBoardString(board));
+
+		// 0なら引き分け
+		// 正ならxの勝ち
+		// 負ならoの勝ち
+		int resultBlack = board.getStoneCount(Rule.BLACK);
+		int resultWhite = board.getStoneCount(Rule.WHITE);
+		int result = resultBlack - resultWhite;
+
+		// 作成日時
+		String date = new java.text.SimpleDateFormat("yyyy-MM-dd-hh-mm-ss").format(new Date());
+		// ファイルパス
+		File file = new File("../"+prefix+date+".log");
+		// ファイル出力するやつ
+		try(PrintWriter pw = new PrintWriter(file,"UTF-8"))
+		{
+			// 棋譜を書き込む
+			pw.println(String.format("AI:%c\n",toChar(ai.color)));
+
+			for(String s:history)
+			{
+				pw.println(s);
+			}
+
+			pw.println(getBoardString(board));
+
+			pw.println(String.format("x:%d",resultBlack));
+			pw.println(String.format("o:%d",resultWhite));
+
+			System.out.format("x:%2d o:%2dで",resultBlack,resultWhite);
+			if(result > 0)
+			{
+				System.out.print("xの勝ちです");
+				pw.println("x WON");
+				pw.println(ai.color == Rule.BLACK ? "AI WON" : "AI LOSE");
+			}
+			else if(result < 0)
+			{
+				System.out.print("oの勝ちです");
+				pw.println("o WON");
+				pw.println(ai.color == Rule.WHITE ? "AI WON" : "AI LOSE");
+			}
+			else
+			{
+				System.out.print("引き分けです");
+				pw.println("DRAW");
+				pw.println("DRAW");
+			}
+			System.out.format(" (you are:%c AI:%c\n",toChar(!ai.color),toChar(ai.color));
+		}
+		catch(IOException e)
+		{
+			throw new UncheckedIOException(e);
+		}
+	}
+	/**
+		石の色を表示する文字にします
+		@param color 石の色
+		@return char 黒ならx、白ならo
+	*/
+	static char toChar(boolean color)
+	{
+		return color == Rule.BLACK ? 'x' : 'o';
+	}
+	/**
+		ボードの状態をStringで返します
+		@param board ボード
+		@return String ボードを文字列で表現したもの
+	*/
+	public static String getBoardString(BitBoard board)
+	{
+		StringBuilder buffer = new StringBuilder();
+		buffer.append("  A B C D E F G H\n");
+		for(int i=0;i<64;i++)
+		{
+			if(i%8 == 0)buffer.append((i/8)+1).append(' ');
+			if((board.black >>> i & 1) != 0)buffer.append("x ");
+			else if((board.white >>> i & 1) != 0)buffer.append("o ");
+			else buffer.append(": ");
+			if(i%8 == 7)buffer.append((i/8)+1).append('\n');
+		}
+		buffer.append("  A B C D E F G H\n");
+		return buffer.toString();
+	}
+}
@@ -0,0 +1,93 @@
+import red.vivid.reversi.*;
+
+/**
+	手数ごとの局面の数を数えて、合法手の生成の正しさと速さを確かめる
+	@author vividorange
+*/
+public class PerftReversi
+{
+	/**
+		起動時に呼ばれます<br>
+		java PerftReversi 深さ [スレッド数] [表のサイズ(MB)] [盤面 手番]<br>
+		盤面は左上から右へ64文字で、xが黒、oが白、それ以外が空きマスです 手番はxかoです<br>
+		盤面を省略すると初期配置から数えて、既知の値と比べます<br>
+		java PerftReversi flip [局面の数] で、裏返しの計算のすべての方式が同じ結果を返すかを確かめます<br>
+		java PerftReversi endgame [空きマスごとの局面の数] で、空きマス1～6の完全読みが全探索と一致するかを確かめます
+		@param args 引数
+	*/
+	public static void main(String[] args)
+	{
+		if(args.length < 1)
+		{
+			System.out.println("java PerftReversi 深さ [スレッド数] [表のサイズ(MB)] [盤面 手番]");
+			System.out.println("java PerftReversi flip [局面の数]");
+			System.out.println("java PerftReversi endgame [空きマスごとの局面の数]");
+			return;
+		}
+		if(args[0].equals("flip"))
+		{
+			int positions = args.length > 1 ? Integer.parseInt(args[1]) : 100000;
+			String diff = FlipEngine.verify(positions, 1);
+			System.out.println(String.format("%s %d positions %s",
+				String.join(",", FlipEngine.NAMES), positions, diff == null ? "OK" : "NG " + diff));
+			if(diff != null)System.exit(1);
+			return;
+		}
+		if(args[0].equals("endgame"))
+		{
+			int positions = args.length > 1 ? Integer.parseInt(args[1]) : 10000;
+			String diff = Endgame.verify(6, positions, 1);
+			System.out.println(String.format("endgame 1-6 empties %d positions each %s",
+				positions, diff == null ? "OK" : "NG " + diff));
+			if(diff != null)System.exit(1);
+			return;
+		}
+		int depth = Integer.parseInt(args[0]);
+		Perft perft = new Perft();
+		if(args.length > 1)perft.setThreads(Integer.parseInt(args[1]));
+		if(args.length > 2)perft.setHashSize(Integer.parseInt(args[2]));
+
+		BitBoard board = new BitBoard();
+		boolean color = Rule.BLACK;
+		boolean initial = true;
+		if(args.length > 4)
+		{
+			board = parseBoard(args[3]);
+			color = args[4].equals("o") ? Rule.WHITE : Rule.BLACK;
+			initial = false;
+		}
+
+		boolean ok = true;
+		for(int d=1;d<=depth;++d)
+		{
+			long n = perft.count(board, color, d);
+			String result = "";
+			if(initial && d < Perft.KNOWN.length)
+			{
+				boolean match = Perft.check(d, n);
+				ok &= match;
+				result = match ? "OK" : "NG (" + Perft.KNOWN[d] + ")";
+			}
+			System.out.println(String.format("%2d %15d %8dms %12dnps %s",
+				d, n, perft.getElapsed() / 1000000, perft.getNodesPerSecond(), result));
+		}
+		if(!ok)System.exit(1);
+	}
+	/**
+		64文字の盤面をBitBoardにします
+		@param s 盤面 xが黒、oが白、それ以外が空きマス
+		@return BitBoard ボード
+	*/
+	static BitBoard parseBoard(String s)
+	{
+		if(s.length() != 64)throw new IllegalArgumentException("盤面は64文字です: " + s);
+		BitBoard board = new BitBoard(0, 0);
+		for(int k=0;k<64;++k)
+		{
+			char c = s.charAt(k);
+			if(c == 'x')board.setStone(Rule.BLACK, k & 7, k >> 3);
+			else if(c == 'o')board.setStone(Rule.WHITE, k & 7, k >> 3);
+		}
+		return board;
+	}
+}
@@ -0,0 +1,39 @@
+import red.vivid.reversi.*;
+import java.io.IOException;
+import java.nio.file.*;
+
+/**
+	AI同士を並列に何局も対局させて、評価関数の学習に使うサンプルのファイルを書き出す
+	@author vividorange
+*/
+public class SelfPlayReversi
+{
+	/**
+		起動時に呼ばれます<br>
+		java SelfPlayReversi [出力] [対局数] [深さ] [ランダムに打つ手数] [スレッド数]<br>
+		出力はTrainReversiの入力にできます
+		@param args 引数
+		@throws IOException 書き出せないとき
+	*/
+	public static void main(String[] args) throws IOException
+	{
+		Path output = Paths.get(args.length > 0 ? args[0] : "../selfplay.smp");
+		int games = args.length > 1 ? Integer.parseInt(args[1]) : 1000;
+
+		SelfPlay selfPlay = new SelfPlay();
+		if(args.length > 2)selfPlay.setDepth(Integer.parseInt(args[2]));
+		if(args.length > 3)selfPlay.setRandomMoves(Integer.parseInt(args[3]));
+		if(args.length > 4)selfPlay.setThreads(Integer.parseInt(args[4]));
+		// 途中経過を1行で上書きしながら表示する
+		selfPlay.setProgress(r -> System.out.print("\r" + r));
+
+		SelfPlay.Result result;
+		try(SampleWriter writer = new SampleWriter(output, 256))
+		{
+			result = selfPlay.run(games, writer);
+		}
+		System.out.println();
+		System.out.println(result);
+		System.out.println("書き出しました:" + output);
+	}
+}
@@ -0,0 +1,45 @@
+import red.vivid.reversi.*;
+
+/**
+	2つのAIを並列に何局も対局させて、勝率とレーティング差を表示する
+	@author vividorange
+*/
+public class TournamentReversi
+{
+	/** 既定の1手あたりの思考時間(ミリ秒) */
+	private static final long DEFAULT_TIME_LIMIT = 20;
+
+	/**
+		起動時に呼ばれます<br>
+		java TournamentReversi [対局数] [AのAI] [BのAI] [思考時間(ミリ秒)] [スレッド数] [elo0 elo1]<br>
+		AIはクラス名で指定します 省略するとAIとRandomAIを100局対局させます<br>
+		何千局も打てるように、思考時間を省略すると1手DEFAULT_TIME_LIMITミリ秒で打ちます 0ならAIの既定値です<br>
+		elo0とelo1を指定すると逐次確率比検定をして、判定がついたところで打ち切ります 対局数は最大の数になります
+		@param args 引数
+	*/
+	public static void main(String[] args)
+	{
+		int games = args.length > 0 ? Integer.parseInt(args[0]) : 100;
+		String a = args.length > 1 ? args[1] : "AI";
+		String b = args.length > 2 ? args[2] : "RandomAI";
+		long timeLimit = args.length > 3 ? Long.parseLong(args[3]) : DEFAULT_TIME_LIMIT;
+
+		Tournament tournament = new Tournament(
+			Tournament.factory(a, timeLimit),
+			Tournament.factory(b, timeLimit));
+		if(args.length > 4)tournament.setThreads(Integer.parseInt(args[4]));
+		if(args.length > 6)
+		{
+			Sprt sprt = new Sprt(Double.parseDouble(args[5]), Double.parseDouble(args[6]));
+			tournament.setSprt(sprt);
+			System.out.println(sprt);
+		}
+		// 途中経過を1行で上書きしながら表示する
+		tournament.setProgress(r -> System.out.print("\r" + r));
+
+		System.out.println(String.format("A:%s B:%s", a, b));
+		Tournament.Result result = tournament.run((games + 1) / 2);
+		System.out.println();
+		System.out.println(result);
+	}
+}
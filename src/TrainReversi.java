@@ -0,0 +1,57 @@
+import red.vivid.reversi.*;
+import java.io.IOException;
+import java.nio.file.*;
+import java.util.*;
+import java.util.stream.*;
+
+/**
+	サンプルのファイルや棋譜から評価関数の重みを学習して、重みのファイルに書き出す
+	@author vividorange
+*/
+public class TrainReversi
+{
+	/**
+		起動時に呼ばれます<br>
+		java TrainReversi [出力] [周回数] [探索の評価値の割合] [入力...]<br>
+		入力はサンプルのファイルか棋譜(.log)か、それらが入ったディレクトリです 省略すると../の棋譜を使います<br>
+		-Dred.vivid.reversi.weights で重みのファイルを指定すると、その重みから学習を続けます
+		@param args 引数
+		@throws IOException 読み書きできないとき
+	*/
+	public static void main(String[] args) throws IOException
+	{
+		Path output = Paths.get(args.length > 0 ? args[0] : "../weights.bin");
+		int epochs = args.length > 1 ? Integer.parseInt(args[1]) : 1;
+		double lambda = args.length > 2 ? Double.parseDouble(args[2]) : 0;
+		List<Path> inputs = new ArrayList<>();
+		for(int i=3;i<Math.max(args.length, 4);++i)
+		{
+			Path path = Paths.get(i < args.length ? args[i] : "..");
+			if(Files.isDirectory(path))
+			{
+				try(Stream<Path> files = Files.list(path))
+				{
+					files.filter(p -> {
+						String name = p.getFileName().toString();
+						return name.endsWith(".log") || name.endsWith(".smp");
+					}).sorted().forEach(inputs::add);
+				}
+			}
+			else
+			{
+				inputs.add(path);
+			}
+		}
+		System.out.println(String.format("入力:%dファイル", inputs.size()));
+
+		// 壊れた重みから学習を続けないように、続けるときはCRC32も確かめる
+		String weights = System.getProperty(Evaluator.PROPERTY);
+		Trainer trainer = new Trainer(weights != null ? Evaluator.load(Paths.get(weights), true) : Evaluator.getDefault());
+		trainer.setEpochs(epochs);
+		trainer.setLambda(lambda);
+		trainer.setProgress(System.out::println);
+		Evaluator evaluator = trainer.train(inputs);
+		evaluator.save(output);
+		System.out.println("書き出しました:" + output);
+	}
+}
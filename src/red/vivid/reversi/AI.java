@@ -1,32 +1,577 @@
 package red.vivid.reversi;
 import java.awt.Point;
 import java.util.*;
+import java.util.concurrent.*;
 
 /**
 	リバーシAI
 	実装はネガマックスアルファベータ法
 	@author vividorange
 */
-public class AI
+public class AI implements Player
 {
+	/**
+		複数のスレッドで探索するときの方式
+	*/
+	public enum Parallel
+	{
+		/** 置換表を共有して同じ局面をそれぞれのスレッドが読む */
+		LAZY_SMP,
+		/** 長男を読んでから弟たちをForkJoinPoolで分割して読む */
+		YBWC
+	}
+
 	/** AIが担当する石の色 */
 	public final boolean color;
-	
+	/** 1手あたりの思考時間(ミリ秒) */
+	private long timeLimit;
+	/** 反復深化の最大の深さ */
+	private int maxDepth = 60;
+	/** この空きマス数以下で石差を完全読みする */
+	private int solveDepth = 16;
+	/** この空きマス数以下で勝ち負けを読み切る */
+	private int wldDepth = 18;
+	/** 置換表のサイズ(MB) */
+	private int hashSize = 16;
+	/** 評価関数 */
+	private Evaluator evaluator = Evaluator.getDefault();
+	/** 定跡 なければnull 最初に引くときにBook.getDefaultにします */
+	private Book book;
+	/** 定跡を決めたか */
+	private boolean bookLoaded;
+	/** 定跡を引くときの正規形のバッファ */
+	private final long[] bookKey = new long[2];
+	/** 置換表 手をまたいで使い回します */
+	private TranspositionTable tt;
+	/** 探索に使うスレッド数 */
+	private int threads = 1;
+	/** スレッドごとの探索 置換表とスレッド数が変わらない間は使い回します */
+	private Search[] searches;
+	/** YBWCでワーカースレッドごとに使う直列探索 置換表が変わらない間は使い回します */
+	private ThreadLocal<YBWCSearch.Leaf> leaves;
+	/** 並列探索の方式 */
+	private Parallel parallel = Parallel.LAZY_SMP;
+	/** ヘルパースレッド */
+	private ExecutorService pool;
+	/** 直前の探索で読み切った深さ */
+	private int depth;
+	/** 直前の探索で探索したノード数 */
+	private long nodes;
+	/** 直前の探索でスレッドごとに探索したノード数 */
+	private long[] threadNodes = new long[0];
+	/** 直前の探索にかかった時間(ナノ秒) */
+	private long elapsed;
+	/** 直前の探索の評価値 */
+	private int score;
+	/** 相手の手番に先読みするか */
+	private boolean ponder;
+	/** 先読みするスレッド */
+	private ExecutorService ponderPool;
+	/** 先読みの探索 */
+	private Search ponderSearch;
+	/** 先読みしている局面(相手が予想した手を打った後) */
+	private BitBoard ponderBoard;
+	/** 先読みの完了待ち */
+	private Future<?> ponderFuture;
+	/** 先読みが当たった回数 */
+	private int ponderHits;
+
 	/**
-		引数で指定した色のAIを生成します
+		引数で指定した色のAIを生成します<br>
+		思考時間は1手1秒です
 		@param color AIの色
 	*/
 	public AI(boolean color)
+	{
+		this(color, 1000);
+	}
+	/**
+		引数で指定した色と思考時間のAIを生成します
+		@param color AIの色
+		@param timeLimit 1手あたりの思考時間(ミリ秒)
+	*/
+	public AI(boolean color, long timeLimit)
 	{
 		this.color = color;
+		this.timeLimit = timeLimit;
+	}
+	/**
+		1手あたりの思考時間を設定します
+		@param timeLimit 思考時間(ミリ秒)
+	*/
+	public void setTimeLimit(long timeLimit)
+	{
+		this.timeLimit = timeLimit;
+	}
+	/**
+		1手あたりの思考時間を返します
+		@return long 思考時間(ミリ秒)
+	*/
+	public long getTimeLimit()
+	{
+		return timeLimit;
+	}
+	/**
+		反復深化の最大の深さを設定します
+		@param maxDepth 最大の深さ
+	*/
+	public void setMaxDepth(int maxDepth)
+	{
+		this.maxDepth = maxDepth;
+	}
+	/**
+		石差を完全読みする空きマス数を設定します
+		@param empties 空きマス数
+	*/
+	public void setSolveDepth(int empties)
+	{
+		this.solveDepth = empties;
+	}
+	/**
+		勝ち負け引き分けだけを読み切る空きマス数を設定します<br>
+		完全読みより少し早く始めると、勝てる手を早く見つけられます
+		@param empties 空きマス数
+	*/
+	public void setWLDDepth(int empties)
+	{
+		this.wldDepth = empties;
+	}
+	/**
+		評価関数を設定します<br>
+		置換表の評価値は前の評価関数のものなので消します
+		@param evaluator 評価関数
+	*/
+	public void setEvaluator(Evaluator evaluator)
+	{
+		stopPonder();
+		this.evaluator = evaluator;
+		this.tt = null;
+		this.searches = null;
+		this.leaves = null;
+		this.ponderSearch = null;
+	}
+	/**
+		評価関数を返します
+		@return Evaluator 評価関数
+	*/
+	public Evaluator getEvaluator()
+	{
+		return evaluator;
+	}
+	/**
+		定跡を設定します<br>
+		定跡にある局面では探索せずに定跡の手を打ちます 既定はBook.getDefaultです
+		@param book 定跡 nullなら使いません
+	*/
+	public void setBook(Book book)
+	{
+		this.book = book;
+		this.bookLoaded = true;
+	}
+	/**
+		置換表のサイズを設定します<br>
+		次のselectで作り直されます
+		@param megabytes サイズ(MB)
+	*/
+	public void setHashSize(int megabytes)
+	{
+		stopPonder();
+		this.hashSize = megabytes;
+		this.tt = null;
+		this.searches = null;
+		this.leaves = null;
+		this.ponderSearch = null;
+	}
+	/**
+		探索に使うスレッド数を設定します<br>
+		2以上にすると、setParallelで選んだ方式で並列に探索します
+		@param threads スレッド数
+	*/
+	public void setThreads(int threads)
+	{
+		if(threads == this.threads)return;
+		shutdown();
+		this.threads = Math.max(1, threads);
+		this.searches = null;
+	}
+	/**
+		探索に使うスレッド数を返します
+		@return int スレッド数
+	*/
+	public int getThreads()
+	{
+		return threads;
+	}
+	/**
+		複数のスレッドで探索するときの方式を設定します
+		@param parallel 並列探索の方式
+	*/
+	public void setParallel(Parallel parallel)
+	{
+		if(parallel == this.parallel)return;
+		shutdown();
+		this.parallel = parallel;
+	}
+	/**
+		新しい対局を始める前に呼びます<br>
+		先読みを止めて置換表を消します 置換表は作り直さずに使い回します
+	*/
+	public void newGame()
+	{
+		stopPonder();
+		if(tt != null)tt.clear();
+	}
+	/**
+		ヘルパースレッドを止めます<br>
+		次のselectで必要なら作り直されます
+	*/
+	public void shutdown()
+	{
+		stopPonder();
+		if(ponderPool != null)
+		{
+			ponderPool.shutdownNow();
+			ponderPool = null;
+		}
+		if(pool != null)
+		{
+			pool.shutdownNow();
+			pool = null;
+		}
+	}
+	/**
+		相手の手番に先読みするかを設定します<br>
+		selectPosで打つ手を決めたら、相手の応手を置換表から予想して、その後の局面を別のスレッドで読み始めます<br>
+		予想が当たれば読んだ結果と温まった置換表を使い、外れれば先読みを止めて普通に読みます
+		@param ponder 先読みするか
+	*/
+	public void setPonder(boolean ponder)
+	{
+		this.ponder = ponder;
+		if(!ponder)stopPonder();
+	}
+	/**
+		先読みが当たった回数を返します
+		@return int 回数
+	*/
+	public int getPonderHits()
+	{
+		return ponderHits;
+	}
+	/**
+		直前のselectで読み切った深さを返します
+		@return int 深さ
+	*/
+	public int getDepth()
+	{
+		return depth;
+	}
+	/**
+		直前のselectで探索したノード数を返します
+		@return long ノード数
+	*/
+	public long getNodes()
+	{
+		return nodes;
+	}
+	/**
+		直前のselectのスレッドごとの1秒あたりのノード数を返します<br>
+		0番目が呼び出したスレッドです YBWCではすべてのスレッドの合計を1つだけ返します
+		@return long[] スレッドごとのノード数/秒
+	*/
+	public long[] getThreadNodesPerSecond()
+	{
+		long[] nps = new long[threadNodes.length];
+		for(int i=0;i<nps.length;++i)
+		{
+			nps[i] = elapsed > 0 ? threadNodes[i] * 1000000000L / elapsed : 0;
+		}
+		return nps;
+	}
+	/**
+		直前のselectで選んだ手の評価値を返します<br>
+		勝ち負けだけを読み切ったときは勝ちなら100、負けなら-100、引き分けなら0です
+		@return int 石差の100倍
+	*/
+	public int getScore()
+	{
+		return score;
 	}
 	/**
 		ボードから石を置くのに最適と判断したセルを返します
 		@param board 石を置きたいボード
-		@return Point 最適と判断したセル
+		@return Point 最適と判断したセル 置ける場所がなければnull
 	*/
 	public Point select(BitBoard board)
 	{
-		return board.getReversibleCells(this.color)[0];
+		int k = selectPos(board);
+		return k < 0 ? null : board.posToPoint(k);
+	}
+	/**
+		ボードから石を置くのに最適と判断したセルをビット位置で返します<br>
+		思考時間を過ぎると、最後に読み切った深さの最善手を返します
+		@param board 石を置きたいボード
+		@return int 最適と判断したセルのビット位置 置ける場所がなければ-1
+	*/
+	public int selectPos(BitBoard board)
+	{
+		long start = System.nanoTime();
+		long deadline = start + timeLimit * 1000000L;
+		// 先読みが当たっていたら、止めるだけで結果は残しておく
+		Search pondered = ponderBoard != null && ponderBoard.equals(board) ? ponderSearch : null;
+		stopPonder();
+		if(pondered != null)++ponderHits;
+		if(tt == null)tt = new TranspositionTable(hashSize);
+		tt.newSearch();
+
+		int pos;
+		if(!bookLoaded)
+		{
+			book = Book.getDefault();
+			bookLoaded = true;
+		}
+		Book.Entry entry = book != null ? book.find(board, this.color, bookKey) : null;
+		if(entry != null && (entry.move < 0 || (board.getMobility(this.color) >>> entry.move & 1) == 0))entry = null;
+		if(entry != null)
+		{
+			pos = entry.move;
+			depth = 0;
+			nodes = 0;
+			threadNodes = new long[0];
+			score = entry.score;
+		}
+		else if(board.getEmptyCount() <= Math.max(solveDepth, wldDepth))
+		{
+			pos = selectEndgame(board, start, deadline);
+		}
+		else
+		{
+			pos = selectMidgame(board, deadline);
+		}
+		// 先読みのほうが深く読めていればその手を使う
+		if(entry == null && pondered != null && pondered.depth > depth && pondered.bestPos >= 0)
+		{
+			pos = pondered.bestPos;
+			depth = pondered.depth;
+			score = pondered.bestScore;
+		}
+		elapsed = System.nanoTime() - start;
+		if(ponder && pos >= 0)
+		{
+			BitBoard next = board.copy();
+			next.putStone(this.color, pos);
+			startPonder(next);
+		}
+		return pos;
+	}
+	@Override
+	public void pass(BitBoard board)
+	{
+		if(ponder)startPonder(board);
+	}
+	@Override
+	public void opponentMoved(BitBoard board, int pos)
+	{
+		// 外れたらすぐに止めてCPUを空ける
+		if(ponderBoard != null && !ponderBoard.equals(board))stopPonder();
+	}
+	@Override
+	public void finished(BitBoard board)
+	{
+		stopPonder();
+	}
+	/**
+		相手の応手を予想して、その後の局面を別のスレッドで読み始めます<br>
+		stopPonderが呼ばれるまで読み続けます
+		@param board 相手の手番のボード
+	*/
+	private void startPonder(BitBoard board)
+	{
+		if(tt == null)tt = new TranspositionTable(hashSize);
+		BitBoard predicted = board.copy();
+		long mobility = board.getMobility(!this.color);
+		if(mobility != 0)
+		{
+			predicted.putStone(!this.color, predictReply(board, mobility));
+		}
+		if(predicted.getMobility(this.color) == 0)return;
+
+		if(ponderPool == null)ponderPool = Executors.newSingleThreadExecutor(daemonFactory());
+		// ponderSearchはselectLazySMPのsearchesと別なので、先読み中も置換表だけを共有する
+		if(ponderSearch == null)ponderSearch = new Search(tt, evaluator);
+		// 止められるまで読むので、締め切りは十分先にしておく
+		ponderSearch.start(System.nanoTime() + TimeUnit.HOURS.toNanos(1), maxDepth);
+		ponderBoard = predicted;
+		final Search search = ponderSearch;
+		ponderFuture = ponderPool.submit(() -> search.run(predicted, color, 1));
+	}
+	/**
+		相手の応手を予想します<br>
+		直前の探索が置換表に残した最善手を使い、なければマスの重みが一番大きい手にします
+		@param board 相手の手番のボード
+		@param mobility 相手の合法手
+		@return int 予想した手のビット位置
+	*/
+	private int predictReply(BitBoard board, long mobility)
+	{
+		int move = TranspositionTable.moveOf(tt.probe(board.getHash(!this.color)));
+		if(move != TranspositionTable.NO_MOVE && (mobility >>> move & 1) != 0)return move;
+		int best = Long.numberOfTrailingZeros(mobility);
+		for(long m = mobility; m != 0; m &= m - 1)
+		{
+			int k = Long.numberOfTrailingZeros(m);
+			if(Search.WEIGHT[k] > Search.WEIGHT[best])best = k;
+		}
+		return best;
+	}
+	/**
+		先読みを止めて、スレッドが戻るのを待ちます<br>
+		先読みしていなければ何もしません
+	*/
+	public void stopPonder()
+	{
+		if(ponderFuture == null)return;
+		ponderSearch.stop();
+		try
+		{
+			ponderFuture.get();
+		}
+		catch(InterruptedException | ExecutionException e)
+		{
+			throw new IllegalStateException(e);
+		}
+		ponderFuture = null;
+		ponderBoard = null;
+	}
+	/**
+		中盤の探索をします
+		@param board 石を置きたいボード
+		@param deadline 探索を打ち切る時刻(System.nanoTime)
+		@return int 最善手のビット位置 置ける場所がなければ-1
+	*/
+	private int selectMidgame(BitBoard board, long deadline)
+	{
+		return threads > 1 && parallel == Parallel.YBWC?
+			selectYBWC(board, deadline):
+			selectLazySMP(board, deadline);
+	}
+	/**
+		終盤を読み切ります<br>
+		思考時間の1/4で中盤の探索をして、読み切れなかったときはその手を返します
+		@param board 石を置きたいボード
+		@param start 思考を始めた時刻(System.nanoTime)
+		@param deadline 探索を打ち切る時刻(System.nanoTime)
+		@return int 最善手のビット位置 置ける場所がなければ-1
+	*/
+	private int selectEndgame(BitBoard board, long start, long deadline)
+	{
+		int empties = board.getEmptyCount();
+		int pos = selectMidgame(board, start + (deadline - start) / 4);
+		if(pos < 0 || depth >= empties)return pos;
+
+		boolean exact = empties <= solveDepth;
+		Endgame solver = new Endgame(deadline, tt);
+		int v = exact?
+			solver.solve(board, this.color, -64, 64, pos):
+			solver.solve(board, this.color, -1, 1, pos);
+		nodes += solver.nodes;
+		if(solver.aborted)return pos;
+		depth = empties;
+		score = exact ? v * 100 : Integer.signum(v) * 100;
+		return solver.bestMove;
+	}
+	/**
+		Lazy SMPで探索します スレッド数が1なら普通の反復深化です
+		@param board 石を置きたいボード
+		@param deadline 探索を打ち切る時刻(System.nanoTime)
+		@return int 最善手のビット位置 置ける場所がなければ-1
+	*/
+	private int selectLazySMP(BitBoard board, long deadline)
+	{
+		if(searches == null)
+		{
+			searches = new Search[threads];
+			for(int i=0;i<threads;++i)
+			{
+				searches[i] = new Search(tt, evaluator);
+			}
+		}
+		for(Search search : searches)
+		{
+			search.start(deadline, maxDepth);
+		}
+		Future<?>[] helpers = new Future<?>[threads - 1];
+		if(threads > 1 && pool == null)
+		{
+			pool = Executors.newFixedThreadPool(threads - 1, daemonFactory());
+		}
+		final BitBoard root = board.copy();
+		for(int i=1;i<threads;++i)
+		{
+			final Search helper = searches[i];
+			// 奇数番目のヘルパーは1つ深いところから読み始める
+			final int startDepth = 1 + (i & 1);
+			helpers[i - 1] = pool.submit(() -> helper.run(root, color, startDepth));
+		}
+		searches[0].run(root, this.color, 1);
+		for(int i=1;i<threads;++i)
+		{
+			searches[i].stop();
+		}
+		for(Future<?> f : helpers)
+		{
+			try
+			{
+				f.get();
+			}
+			catch(InterruptedException | ExecutionException e)
+			{
+				throw new IllegalStateException(e);
+			}
+		}
+
+		// 一番深くまで読み切った結果を使う
+		Search best = searches[0];
+		nodes = 0;
+		threadNodes = new long[threads];
+		for(int i=0;i<threads;++i)
+		{
+			threadNodes[i] = searches[i].nodes;
+			nodes += searches[i].nodes;
+			if(searches[i].depth > best.depth)best = searches[i];
+		}
+		depth = best.depth;
+		score = best.bestScore;
+		return best.bestPos;
+	}
+	/**
+		Young Brothers Waitで探索します
+		@param board 石を置きたいボード
+		@param deadline 探索を打ち切る時刻(System.nanoTime)
+		@return int 最善手のビット位置 置ける場所がなければ-1
+	*/
+	private int selectYBWC(BitBoard board, long deadline)
+	{
+		if(pool == null)pool = new ForkJoinPool(threads);
+		if(leaves == null)leaves = YBWCSearch.newLeaves(tt, evaluator);
+		YBWCSearch search = new YBWCSearch((ForkJoinPool)pool, deadline, maxDepth, tt, leaves);
+		search.run(board, this.color);
+		nodes = search.nodes;
+		threadNodes = new long[]{ search.nodes };
+		depth = search.depth;
+		score = search.bestScore;
+		return search.bestPos;
+	}
+	/**
+		デーモンスレッドを作るThreadFactoryを返します
+		@return ThreadFactory ヘルパースレッド用のファクトリ
+	*/
+	private static ThreadFactory daemonFactory()
+	{
+		return r -> {
+			Thread t = new Thread(r, "AI-helper");
+			t.setDaemon(true);
+			return t;
+		};
 	}
 }
@@ -3,14 +3,69 @@ import java.awt.Point;
 import java.util.*;
 
 /**
-	ビットボード実装
+	ビットボード実装<br>
+	局面のハッシュ値(Zobrist)を持っていて、石を置いたり裏返したりするたびに差分で更新します<br>
+	trackPatternsを呼んだボードは評価関数のパターンのインデックスも差分で更新します
 */
 public class BitBoard
 {
+	/** 裏返る石の計算方式 起動時にシステムプロパティで選びます */
+	private static final FlipEngine FLIP = FlipEngine.forName(System.getProperty(FlipEngine.PROPERTY, "table"));
+
+	/** 対称変換の数 */
+	public static final int SYMMETRIES = 8;
+	/** 変換番号のビット 左右反転 */
+	public static final int FLIP_HORIZONTAL = 1;
+	/** 変換番号のビット 上下反転 */
+	public static final int FLIP_VERTICAL = 2;
+	/** 変換番号のビット 対角線(左上から右下)で反転 */
+	public static final int FLIP_DIAGONAL = 4;
+
+	/** マスごとの黒い石の乱数 */
+	private static final long[] ZOBRIST_BLACK = new long[64];
+	/** マスごとの白い石の乱数 */
+	private static final long[] ZOBRIST_WHITE = new long[64];
+	/** 裏返る石の乱数(黒と白のXOR)を8ビットずつまとめた表 */
+	private static final long[] ZOBRIST_FLIP = new long[8 * 256];
+	/** 白番の乱数 */
+	private static final long ZOBRIST_WHITE_TO_MOVE;
+
+	static
+	{
+		// 定跡ファイルなどに書き出しても変わらないように種を固定する(SplitMix64)
+		long seed = 0x5265766572736921L;
+		for(int k=0;k<64;++k)
+		{
+			ZOBRIST_BLACK[k] = mix(seed += 0x9e3779b97f4a7c15L);
+			ZOBRIST_WHITE[k] = mix(seed += 0x9e3779b97f4a7c15L);
+		}
+		ZOBRIST_WHITE_TO_MOVE = mix(seed += 0x9e3779b97f4a7c15L);
+		for(int i=0;i<8;++i)
+		{
+			for(int b=0;b<256;++b)
+			{
+				long h = 0;
+				for(int j=0;j<8;++j)
+				{
+					if((b >>> j & 1) != 0)
+					{
+						int k = (i << 3) + j;
+						h ^= ZOBRIST_BLACK[k] ^ ZOBRIST_WHITE[k];
+					}
+				}
+				ZOBRIST_FLIP[(i << 8) | b] = h;
+			}
+		}
+	}
+
 	/** 黒い石を64ビットで表現 */
 	public long black;
 	/** 白い石を64ビットで表現 */
 	public long white;
+	/** 局面のハッシュ値 blackとwhiteを直接書き換えたときはrehashを呼びます */
+	private long hash;
+	/** パターンのインデックス trackPatternsを呼ぶまではnullで、石を置くたびに差分で更新します */
+	private int[] patterns;
 	/**
 		BitBoardを生成します
 		@param black 黒い石
@@ -20,6 +75,7 @@ public class BitBoard
 	{
 		this.black = black;
 		this.white = white;
+		rehash();
 	}
 	/**
 		初期配置でBitBoardを生成します
@@ -33,7 +89,131 @@ public class BitBoard
 		@return BitBoard このインスタンスをコピーした新しいBitBoard
 	*/
 	public BitBoard copy(){
-		return new BitBoard(black,white);
+		BitBoard b = new BitBoard(0, 0);
+		b.set(this);
+		return b;
+	}
+	/**
+		引数のBitBoardの局面をこのインスタンスに写します
+		@param t 写すBitBoard
+	*/
+	public void set(BitBoard t)
+	{
+		black = t.black;
+		white = t.white;
+		hash = t.hash;
+		updatePatterns();
+	}
+	/**
+		パターンのインデックスを追跡し始めます<br>
+		評価関数を呼ぶ探索用のボードで使います それ以外のボードは追跡しないので、石を置くコストは変わりません
+	*/
+	public void trackPatterns()
+	{
+		if(patterns != null)return;
+		patterns = new int[Pattern.COUNT];
+		updatePatterns();
+	}
+	/**
+		パターンのインデックスを返します
+		@return int[] インデックス trackPatternsを呼んでいなければnull
+	*/
+	public int[] getPatterns()
+	{
+		return patterns;
+	}
+	/**
+		追跡していればパターンのインデックスを計算し直します
+	*/
+	private void updatePatterns()
+	{
+		if(patterns != null)Pattern.indices(black, white, patterns);
+	}
+	/**
+		局面のハッシュ値を返します 手番は含みません
+		@return long 64ビットのハッシュ値
+	*/
+	public long getHash()
+	{
+		return hash;
+	}
+	/**
+		手番を含めた局面のハッシュ値を返します<br>
+		置換表や定跡のキーに使います
+		@param color 手番の色
+		@return long 64ビットのハッシュ値
+	*/
+	public long getHash(boolean color)
+	{
+		return color == Rule.BLACK ? hash : hash ^ ZOBRIST_WHITE_TO_MOVE;
+	}
+	/**
+		blackとwhiteからハッシュ値を計算し直します
+	*/
+	public void rehash()
+	{
+		hash = hash(black, white);
+		updatePatterns();
+	}
+	/**
+		石の配置からハッシュ値を計算します
+		@param black 黒い石
+		@param white 白い石
+		@return long 手番を含まないハッシュ値
+	*/
+	public static long hash(long black, long white)
+	{
+		long h = 0;
+		for(long m = black; m != 0; m &= m - 1)
+		{
+			h ^= ZOBRIST_BLACK[Long.numberOfTrailingZeros(m)];
+		}
+		for(long m = white; m != 0; m &= m - 1)
+		{
+			h ^= ZOBRIST_WHITE[Long.numberOfTrailingZeros(m)];
+		}
+		return h;
+	}
+	/**
+		石を置いて裏返したときのハッシュ値の差分を返します<br>
+		裏返る石は8ビットずつ表を引くので、数によらず一定の時間で計算できます
+		@param color 石を置く色
+		@param pos 石を置く場所(1ビット)
+		@param rev 裏返る石
+		@return long 局面のハッシュ値にXORする値
+	*/
+	public static long hashDelta(boolean color, long pos, long rev)
+	{
+		int k = Long.numberOfTrailingZeros(pos);
+		long h = color == Rule.BLACK ? ZOBRIST_BLACK[k] : ZOBRIST_WHITE[k];
+		return h
+			^ ZOBRIST_FLIP[(int)rev & 0xff]
+			^ ZOBRIST_FLIP[256 | ((int)(rev >>> 8) & 0xff)]
+			^ ZOBRIST_FLIP[512 | ((int)(rev >>> 16) & 0xff)]
+			^ ZOBRIST_FLIP[768 | ((int)(rev >>> 24) & 0xff)]
+			^ ZOBRIST_FLIP[1024 | ((int)(rev >>> 32) & 0xff)]
+			^ ZOBRIST_FLIP[1280 | ((int)(rev >>> 40) & 0xff)]
+			^ ZOBRIST_FLIP[1536 | ((int)(rev >>> 48) & 0xff)]
+			^ ZOBRIST_FLIP[1792 | (int)(rev >>> 56)];
+	}
+	/**
+		手番を入れ替えたときのハッシュ値の差分を返します
+		@return long 手番を含めたハッシュ値にXORする値
+	*/
+	public static long hashSideDelta()
+	{
+		return ZOBRIST_WHITE_TO_MOVE;
+	}
+	/**
+		SplitMix64の出力関数
+		@param z 種
+		@return long 乱数
+	*/
+	private static long mix(long z)
+	{
+		z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+		z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+		return z ^ (z >>> 31);
 	}
 	/**
 		引数のBitBoardと等しいかを返します
@@ -66,7 +246,7 @@ public class BitBoard
 	*/
 	public int getEmptyCount()
 	{
-		return 64-getTurnCount();
+		return Long.bitCount(~(black | white));
 	}
 	/**
 		その位置に石があるかを返します
@@ -105,21 +285,28 @@ public class BitBoard
 	*/
 	public Point[] getReversibleCells(boolean color)
 	{
-		int z = getReversibleCount(color);
+		long reversiblePos = getMobility(color);
+		int z = Long.bitCount(reversiblePos);
 		Point[] cells = new Point[z];
-		long reversiblePos = color == Rule.BLACK?
-			getReversiblePos(black, white):
-			getReversiblePos(white, black);
 		
-		for(int i=0;i<64;++i)
+		for(long m = reversiblePos; m != 0; m &= m - 1)
 		{
-			if((reversiblePos>>i&1) == 1)
-			{
-				cells[--z] = posToPoint(i);
-			}
+			cells[--z] = posToPoint(Long.numberOfTrailingZeros(m));
 		}
 		return cells;
 	}
+	/**
+		相手の石を返せるセルの位置のビットを返します<br>
+		1つずつ取り出すときはLong.numberOfTrailingZerosとm &amp;= m - 1を使います
+		@param color 評価する色
+		@return long 石を置ける場所
+	*/
+	public long getMobility(boolean color)
+	{
+		return color == Rule.BLACK?
+			getReversiblePos(black, white):
+			getReversiblePos(white, black);
+	}
 	/**
 		相手の石を返せるセルの数を返します
 		@param color 評価する色
@@ -127,11 +314,7 @@ public class BitBoard
 	*/
 	public int getReversibleCount(boolean color)
 	{
-		long reversiblePos = color == Rule.BLACK?
-			getReversiblePos(black, white):
-			getReversiblePos(white, black);
-		return Long.bitCount(reversiblePos);
-		
+		return Long.bitCount(getMobility(color));
 	}
 	/**
 		指定した場所に石を置きます
@@ -141,9 +324,19 @@ public class BitBoard
 	*/
 	public void setStone(boolean color, int x, int y)
 	{
-		long m = (1L << ((y << 3) + x));
-		if(color == Rule.BLACK)black |= m;
-		else white |= m;
+		int k = (y << 3) + x;
+		long m = (1L << k);
+		if(color == Rule.BLACK)
+		{
+			if((black & m) == 0)hash ^= ZOBRIST_BLACK[k];
+			black |= m;
+		}
+		else
+		{
+			if((white & m) == 0)hash ^= ZOBRIST_WHITE[k];
+			white |= m;
+		}
+		updatePatterns();
 	}
 	/**
 		指定した場所の石を消します
@@ -153,9 +346,19 @@ public class BitBoard
 	*/
 	public void clearStone(boolean color, int x, int y)
 	{
-		long m = (0xffffffffffffffffL ^ (1L << ((y << 3) + x)));
-		if(color == Rule.BLACK)black &= m;
-		else white &= m;
+		int k = (y << 3) + x;
+		long m = (0xffffffffffffffffL ^ (1L << k));
+		if(color == Rule.BLACK)
+		{
+			if((black & ~m) != 0)hash ^= ZOBRIST_BLACK[k];
+			black &= m;
+		}
+		else
+		{
+			if((white & ~m) != 0)hash ^= ZOBRIST_WHITE[k];
+			white &= m;
+		}
+		updatePatterns();
 	}
 	/**
 		Pointで指定したセルに石を置きます
@@ -176,10 +379,20 @@ public class BitBoard
 	*/
 	public boolean putStone(boolean color, int x, int y)
 	{
-		if(existStone(color,x,y))return false;
-		long pos = toPos(x,y);
-		long rev = toRev(color,pos);
-		return putStone(color, pos, rev);
+		return putStone(color, (y << 3) + x);
+	}
+	/**
+		ビット位置で指定したセルに石を置きます
+		@param color 評価する色
+		@param k kビット目
+		@return boolean 石を置けたか
+	*/
+	public boolean putStone(boolean color, int k)
+	{
+		if(k < 0 || 64 <= k)return false;
+		long pos = 1L << k;
+		if(((black | white) & pos) != 0)return false;
+		return putStone(color, pos, toRev(color, pos));
 	}
 	/**
 		64ビット論理演算で指定した位置に石を置きます
@@ -206,6 +419,16 @@ public class BitBoard
 				getReverseBit(black, white, pos):
 				getReverseBit(white, black, pos);
 	}
+	/**
+		ビット位置から裏返る石に変換します
+		@param color 評価する色
+		@param k 石を置くビット位置
+		@return long 裏返る石
+	*/
+	public long toRev(boolean color, int k)
+	{
+		return toRev(color, 1L << k);
+	}
 	/**
 		Pointを位置に変換します
 		@param cell 石を置くセル
@@ -233,6 +456,8 @@ public class BitBoard
 	*/
 	public void reverse(boolean color, long pos, long rev)
 	{
+		hash ^= hashDelta(color, pos, rev);
+		if(patterns != null)Pattern.apply(patterns, color, pos, rev);
 		if(color == Rule.BLACK)
 		{
 			black ^= pos|rev;
@@ -244,6 +469,46 @@ public class BitBoard
 			black ^= rev;
 		}
 	}
+	/**
+		石を置いて、戻せるようにスタックに積みます<br>
+		reverseはXORなので、同じ引数でもう一度呼ぶと元に戻ります
+		@param stack 手を積むスタック
+		@param color 評価する色
+		@param pos 石を置く場所
+		@param rev 返る石
+	*/
+	public void doMove(MoveStack stack, boolean color, long pos, long rev)
+	{
+		int i = stack.ply++;
+		stack.pos[i] = pos;
+		stack.rev[i] = rev;
+		stack.color[i] = color;
+		stack.hash[i] = hash;
+		reverse(color, pos, rev);
+	}
+	/**
+		スタックの一番上の手を戻します
+		@param stack doMoveで手を積んだスタック
+	*/
+	public void undoMove(MoveStack stack)
+	{
+		int i = --stack.ply;
+		long pos = stack.pos[i];
+		long rev = stack.rev[i];
+		// ハッシュ値は差分を計算し直さずに積んでおいた値に戻す
+		if(stack.color[i] == Rule.BLACK)
+		{
+			black ^= pos|rev;
+			white ^= rev;
+		}
+		else
+		{
+			white ^= pos|rev;
+			black ^= rev;
+		}
+		hash = stack.hash[i];
+		if(patterns != null)Pattern.revert(patterns, stack.color[i], pos, rev);
+	}
 	/**
 		ゲームが終了しているかを返します
 		@return boolean ゲームが終了しているか
@@ -278,92 +543,9 @@ public class BitBoard
 		@param pos 石を置く場所
 		@return long 裏返せる石 rev
 	*/
-	public long getReverseBit(long my, long opp, long pos)
+	public static long getReverseBit(long my, long opp, long pos)
 	{
-		long rev = 0, tmp, mask;
-		
-        // 右
-        tmp=0;
-        mask = (pos >>> 1) & 0x7f7f7f7f7f7f7f7fL;
-        while(mask!=0 && (mask & opp)!=0)
-		{
-            tmp |= mask;
-            mask = (mask >>> 1) & 0x7f7f7f7f7f7f7f7fL;
-        }
-        if((mask & my)!=0) rev |= tmp;
-
-        // 左
-        tmp=0;
-        mask = (pos << 1) & 0xfefefefefefefefeL;
-        while(mask!=0 && (mask & opp)!=0)
-		{
-            tmp |= mask;
-            mask = (mask << 1) & 0xfefefefefefefefeL;
-        }
-        if((mask & my)!=0) rev |= tmp;
-
-        // 上
-        tmp=0;
-        mask = (pos << 8);
-        while(mask!=0 && (mask & opp)!=0)
-		{
-            tmp |= mask;
-            mask = (mask << 8);
-        }
-        if((mask & my)!=0) rev |= tmp;
-
-        // 下
-        tmp=0;
-        mask = (pos >>> 8);
-        while(mask!=0 && (mask & opp)!=0)
-		{
-            tmp |= mask;
-            mask = (mask >>> 8);
-        }
-        if((mask & my)!=0) rev |= tmp;
-
-        // 右上
-        tmp=0;
-        mask = (pos << 7) & 0x7f7f7f7f7f7f7f7fL;
-        while(mask!=0 && (mask & opp)!=0)
-		{
-            tmp |= mask;
-            mask = (mask << 7) & 0x7f7f7f7f7f7f7f7fL;
-        }
-        if((mask & my)!=0) rev |= tmp;
-
-        // 左上
-        tmp=0;
-        mask = (pos << 9) & 0xfefefefefefefefeL;
-        while(mask!=0 && (mask & opp)!=0)
-		{
-            tmp |= mask;
-            mask = (mask << 9) & 0xfefefefefefefefeL;
-        }
-        if((mask & my)!=0) rev |= tmp;
-
-        // 右下
-        tmp=0;
-        mask = (pos >>> 9) & 0x7f7f7f7f7f7f7f7fL;
-        while(mask!=0 && (mask & opp)!=0)
-		{
-            tmp |= mask;
-            mask = (mask >>> 9) & 0x7f7f7f7f7f7f7f7fL;
-        }
-        if((mask & my)!=0) rev |= tmp;
-
-        // 左下
-        tmp=0;
-        mask = (pos >>> 7) & 0xfefefefefefefefeL;
-        while(mask!=0 && (mask & opp)!=0)
-		{
-            tmp |= mask;
-            mask = (mask >>> 7) & 0xfefefefefefefefeL;
-        }
-        if((mask & my)!=0) rev |= tmp;
-
-
-        return rev;
+		return FLIP.flip(my, opp, pos);
 	}
 	/**
 		裏返す石の情報と裏返される石の情報を渡して相手の石を裏返せるセルの位置のビットを返します
@@ -371,7 +553,7 @@ public class BitBoard
 		@param opp 裏返される色
 		@return long 裏返る場所 pos
 	*/
-	public long getReversiblePos(long my, long opp)
+	public static long getReversiblePos(long my, long opp)
 	{
         long blank = ~(my | opp);
         long mobility = 0, t, w;
@@ -434,4 +616,205 @@ public class BitBoard
 
         return mobility;
     }
+
+	/**
+		左右を反転します (x,y)→(7-x,y)
+		@param b ビットボード
+		@return long 反転したビットボード
+	*/
+	public static long flipHorizontal(long b)
+	{
+		b = ((b >>> 1) & 0x5555555555555555L) | ((b & 0x5555555555555555L) << 1);
+		b = ((b >>> 2) & 0x3333333333333333L) | ((b & 0x3333333333333333L) << 2);
+		return ((b >>> 4) & 0x0f0f0f0f0f0f0f0fL) | ((b & 0x0f0f0f0f0f0f0f0fL) << 4);
+	}
+	/**
+		上下を反転します (x,y)→(x,7-y)
+		@param b ビットボード
+		@return long 反転したビットボード
+	*/
+	public static long flipVertical(long b)
+	{
+		return Long.reverseBytes(b);
+	}
+	/**
+		左上から右下への対角線で反転します (x,y)→(y,x)
+		@param b ビットボード
+		@return long 反転したビットボード
+	*/
+	public static long flipDiagonal(long b)
+	{
+		long t;
+		t = 0x0f0f0f0f00000000L & (b ^ (b << 28));
+		b ^= t ^ (t >>> 28);
+		t = 0x3333000033330000L & (b ^ (b << 14));
+		b ^= t ^ (t >>> 14);
+		t = 0x5500550055005500L & (b ^ (b << 7));
+		return b ^ t ^ (t >>> 7);
+	}
+	/**
+		右上から左下への対角線で反転します (x,y)→(7-y,7-x)
+		@param b ビットボード
+		@return long 反転したビットボード
+	*/
+	public static long flipAntiDiagonal(long b)
+	{
+		return Long.reverse(flipDiagonal(b));
+	}
+	/**
+		時計回りに90度回転します (x,y)→(7-y,x)
+		@param b ビットボード
+		@return long 回転したビットボード
+	*/
+	public static long rotateClockwise(long b)
+	{
+		return flipHorizontal(flipDiagonal(b));
+	}
+	/**
+		反時計回りに90度回転します (x,y)→(y,7-x)
+		@param b ビットボード
+		@return long 回転したビットボード
+	*/
+	public static long rotateCounterclockwise(long b)
+	{
+		return flipVertical(flipDiagonal(b));
+	}
+	/**
+		180度回転します (x,y)→(7-x,7-y)
+		@param b ビットボード
+		@return long 回転したビットボード
+	*/
+	public static long rotate180(long b)
+	{
+		return Long.reverse(b);
+	}
+	/**
+		変換番号の対称変換をします<br>
+		FLIP_DIAGONAL、FLIP_VERTICAL、FLIP_HORIZONTALの順に、立っているビットの変換をします
+		@param b ビットボード
+		@param t 変換番号(0～7)
+		@return long 変換したビットボード
+	*/
+	public static long transform(long b, int t)
+	{
+		if((t & FLIP_DIAGONAL) != 0)b = flipDiagonal(b);
+		if((t & FLIP_VERTICAL) != 0)b = flipVertical(b);
+		if((t & FLIP_HORIZONTAL) != 0)b = flipHorizontal(b);
+		return b;
+	}
+	/**
+		変換番号の逆変換をします
+		@param b 変換したビットボード
+		@param t 変換番号(0～7)
+		@return long 元のビットボード
+	*/
+	public static long inverseTransform(long b, int t)
+	{
+		if((t & FLIP_HORIZONTAL) != 0)b = flipHorizontal(b);
+		if((t & FLIP_VERTICAL) != 0)b = flipVertical(b);
+		if((t & FLIP_DIAGONAL) != 0)b = flipDiagonal(b);
+		return b;
+	}
+	/**
+		マスのビット位置を変換番号で変換します
+		@param k ビット位置
+		@param t 変換番号(0～7)
+		@return int 変換したビット位置
+	*/
+	public static int transformPos(int k, int t)
+	{
+		int x = k & 7;
+		int y = k >>> 3;
+		if((t & FLIP_DIAGONAL) != 0){ int w = x; x = y; y = w; }
+		if((t & FLIP_VERTICAL) != 0)y = 7 - y;
+		if((t & FLIP_HORIZONTAL) != 0)x = 7 - x;
+		return (y << 3) + x;
+	}
+	/**
+		変換したマスのビット位置を元に戻します<br>
+		正規化した局面で見つけた手を、元の局面の手に直すのに使います
+		@param k 変換したビット位置
+		@param t 変換番号(0～7)
+		@return int 元のビット位置
+	*/
+	public static int inverseTransformPos(int k, int t)
+	{
+		int x = k & 7;
+		int y = k >>> 3;
+		if((t & FLIP_HORIZONTAL) != 0)x = 7 - x;
+		if((t & FLIP_VERTICAL) != 0)y = 7 - y;
+		if((t & FLIP_DIAGONAL) != 0){ int w = x; x = y; y = w; }
+		return (y << 3) + x;
+	}
+	/**
+		局面を対称変換した新しいBitBoardを返します
+		@param t 変換番号(0～7)
+		@return BitBoard 変換したBitBoard
+	*/
+	public BitBoard transform(int t)
+	{
+		return new BitBoard(transform(black, t), transform(white, t));
+	}
+	/**
+		8通りの対称変換のうち、(black, white)を符号なしで比べて最小になる変換番号を返します<br>
+		同じ最小値になる変換が複数あるときは小さい番号を返します
+		@return int 変換番号(0～7)
+	*/
+	public int canonicalTransform()
+	{
+		return canonicalTransform(black, white);
+	}
+	/**
+		8通りの対称変換のうち、(black, white)を符号なしで比べて最小になる変換番号を返します<br>
+		手番の石と相手の石を渡せば、手番から見た局面の正規化に使えます
+		@param black 1つ目のビットボード 先に比べます
+		@param white 2つ目のビットボード
+		@return int 変換番号(0～7)
+	*/
+	public static int canonicalTransform(long black, long white)
+	{
+		return canonical(black, white, null);
+	}
+	/**
+		8通りの対称変換で局面の代表(正規形)を求めて、その変換番号を返します<br>
+		変換は1回ずつしか計算しないので、canonicalTransformの後でtransformするより速くなります
+		@param black 1つ目のビットボード 先に比べます
+		@param white 2つ目のビットボード
+		@param out 正規形の(black, white)を入れる長さ2の配列 nullなら入れません
+		@return int 変換番号(0～7) outの局面を元に戻すにはinverseTransformに渡します
+	*/
+	public static int canonical(long black, long white, long[] out)
+	{
+		int best = 0;
+		long bestBlack = black;
+		long bestWhite = white;
+		for(int t=1;t<SYMMETRIES;++t)
+		{
+			long b = transform(black, t);
+			int c = Long.compareUnsigned(b, bestBlack);
+			if(c > 0)continue;
+			long w = transform(white, t);
+			if(c < 0 || Long.compareUnsigned(w, bestWhite) < 0)
+			{
+				best = t;
+				bestBlack = b;
+				bestWhite = w;
+			}
+		}
+		if(out != null)
+		{
+			out[0] = bestBlack;
+			out[1] = bestWhite;
+		}
+		return best;
+	}
+	/**
+		対称な局面の代表(正規形)を求めて、その変換番号を返します
+		@param out 正規形の(black, white)を入れる長さ2の配列
+		@return int 変換番号(0～7)
+	*/
+	public int canonical(long[] out)
+	{
+		return canonical(black, white, out);
+	}
 }
\ No newline at end of file
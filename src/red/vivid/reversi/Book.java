@@ -0,0 +1,264 @@
+package red.vivid.reversi;
+
+import java.io.IOException;
+import java.nio.*;
+import java.nio.channels.FileChannel;
+import java.nio.file.*;
+import java.util.*;
+
+/**
+	定跡<br>
+	手番から見た局面(手番の石, 相手の石)を対称変換で正規化したものをキーにして、最善手と評価値と対局数を持ちます<br>
+	ファイルはキーを符号なしで昇順に並べたレコードの配列で、FileChannel.mapで写像して二分探索するので、ヒープに読み込みません<br>
+	すべてリトルエンディアンです<br>
+	<pre>
+	int   MAGIC
+	int   VERSION
+	long  レコードの数
+	レコード(BYTESバイト)
+		long  手番の石(正規形)
+		long  相手の石(正規形)
+		int   対局数
+		short 手番から見た評価値(石差の100倍)
+		byte  最善手のビット位置(正規形) なければ-1
+		byte  予約(0)
+	</pre>
+	@author vividorange
+*/
+public class Book
+{
+	/** 定跡のファイルを指定するシステムプロパティの名前 */
+	public static final String PROPERTY = "red.vivid.reversi.book";
+	/** 定跡のファイルの先頭 "RVBK" */
+	public static final int MAGIC = 0x4b425652;
+	/** 定跡のファイルの形式の版 */
+	public static final int VERSION = 1;
+	/** ヘッダーのバイト数 */
+	public static final int HEADER = 16;
+	/** 1つのレコードのバイト数 */
+	public static final int BYTES = 24;
+
+	/** 既定の定跡 */
+	private static Book defaultBook;
+	/** 既定の定跡を開いたか 指定がなくてnullのときも開いたことにします */
+	private static boolean defaultLoaded;
+
+	/** レコードを写像したバッファ */
+	private final ByteBuffer records;
+	/** レコードの数 */
+	private final int size;
+
+	/**
+		写像したレコードから定跡を生成します
+		@param records レコード
+		@param size レコードの数
+	*/
+	private Book(ByteBuffer records, int size)
+	{
+		this.records = records;
+		this.size = size;
+	}
+	/**
+		既定の定跡を返します<br>
+		システムプロパティ red.vivid.reversi.book で指定した定跡を最初に呼ばれたときに開き、以後は同じものを返します
+		@return Book 定跡 指定していなければnull
+		@throws java.io.UncheckedIOException ファイルを開けないとき
+	*/
+	public static synchronized Book getDefault()
+	{
+		if(!defaultLoaded)
+		{
+			String path = System.getProperty(PROPERTY);
+			try
+			{
+				defaultBook = path != null ? open(Paths.get(path)) : null;
+			}
+			catch(IOException e)
+			{
+				throw new java.io.UncheckedIOException(e);
+			}
+			defaultLoaded = true;
+		}
+		return defaultBook;
+	}
+	/**
+		定跡のファイルを写像して開きます
+		@param path ファイル
+		@return Book 定跡
+		@throws IOException 開けないか、形式が違うとき
+	*/
+	public static Book open(Path path) throws IOException
+	{
+		try(FileChannel channel = FileChannel.open(path, StandardOpenOption.READ))
+		{
+			long bytes = channel.size();
+			if(bytes < HEADER)throw new IOException(path + ": 定跡のファイルではありません");
+			ByteBuffer map = channel.map(FileChannel.MapMode.READ_ONLY, 0, bytes).order(ByteOrder.LITTLE_ENDIAN);
+			if(map.getInt(0) != MAGIC)throw new IOException(path + ": 定跡のファイルではありません");
+			if(map.getInt(4) != VERSION)throw new IOException(path + ": 知らない版です " + map.getInt(4));
+			long size = map.getLong(8);
+			if(bytes != HEADER + size * BYTES || size > Integer.MAX_VALUE / BYTES)
+			{
+				throw new IOException(path + ": 大きさが違います " + bytes);
+			}
+			map.position(HEADER);
+			return new Book(map.slice().order(ByteOrder.LITTLE_ENDIAN), (int)size);
+		}
+	}
+	/**
+		レコードの数を返します
+		@return int レコードの数
+	*/
+	public int size()
+	{
+		return size;
+	}
+	/**
+		局面を定跡から探します
+		@param board ボード
+		@param color 手番の色
+		@return Entry 見つかったレコード 手は元の局面のビット位置に戻してあります なければnull
+	*/
+	public Entry find(BitBoard board, boolean color)
+	{
+		return find(board, color, new long[2]);
+	}
+	/**
+		正規形を入れる配列を使い回して、局面を定跡から探します<br>
+		見つからなければ何も生成しません
+		@param board ボード
+		@param color 手番の色
+		@param key 正規形を入れる長さ2の配列
+		@return Entry 見つかったレコード 手は元の局面のビット位置に戻してあります なければnull
+	*/
+	public Entry find(BitBoard board, boolean color, long[] key)
+	{
+		long my = color == Rule.BLACK ? board.black : board.white;
+		long opp = color == Rule.BLACK ? board.white : board.black;
+		int t = BitBoard.canonical(my, opp, key);
+		int i = search(key[0], key[1]);
+		if(i < 0)return null;
+		int offset = i * BYTES;
+		int move = records.get(offset + 22);
+		return new Entry(my, opp,
+			move < 0 ? -1 : BitBoard.inverseTransformPos(move, t),
+			records.getShort(offset + 20), records.getInt(offset + 16));
+	}
+	/**
+		正規形のキーを二分探索します
+		@param my 手番の石(正規形)
+		@param opp 相手の石(正規形)
+		@return int レコードの番号 なければ-1
+	*/
+	private int search(long my, long opp)
+	{
+		int lo = 0;
+		int hi = size - 1;
+		while(lo <= hi)
+		{
+			int mid = (lo + hi) >>> 1;
+			int c = compare(records.getLong(mid * BYTES), records.getLong(mid * BYTES + 8), my, opp);
+			if(c < 0)lo = mid + 1;
+			else if(c > 0)hi = mid - 1;
+			else return mid;
+		}
+		return -1;
+	}
+	/**
+		キーを符号なしで比べます
+		@param my1 1つ目の手番の石
+		@param opp1 1つ目の相手の石
+		@param my2 2つ目の手番の石
+		@param opp2 2つ目の相手の石
+		@return int 1つ目が小さければ負、等しければ0、大きければ正
+	*/
+	static int compare(long my1, long opp1, long my2, long opp2)
+	{
+		int c = Long.compareUnsigned(my1, my2);
+		return c != 0 ? c : Long.compareUnsigned(opp1, opp2);
+	}
+	/**
+		レコードを正規化して並べ、定跡のファイルに書き出します<br>
+		同じ局面のレコードが複数あるときは最初のものを使います
+		@param path ファイル
+		@param entries レコード
+		@throws IOException 書き出せないとき
+	*/
+	public static void write(Path path, Collection<Entry> entries) throws IOException
+	{
+		List<Entry> list = new ArrayList<>(entries.size());
+		for(Entry e : entries)
+		{
+			list.add(e.canonical());
+		}
+		list.sort((a, b) -> compare(a.my, a.opp, b.my, b.opp));
+		ByteBuffer buffer = ByteBuffer.allocate(HEADER + list.size() * BYTES).order(ByteOrder.LITTLE_ENDIAN);
+		buffer.putInt(MAGIC).putInt(VERSION).putLong(0);
+		int n = 0;
+		Entry prev = null;
+		for(Entry e : list)
+		{
+			if(prev != null && compare(prev.my, prev.opp, e.my, e.opp) == 0)continue;
+			prev = e;
+			buffer.putLong(e.my).putLong(e.opp).putInt(e.count).putShort((short)e.score);
+			buffer.put((byte)e.move).put((byte)0);
+			++n;
+		}
+		buffer.putLong(8, n);
+		buffer.flip();
+		try(FileChannel channel = FileChannel.open(path,
+			StandardOpenOption.WRITE, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING))
+		{
+			while(buffer.hasRemaining())channel.write(buffer);
+		}
+	}
+
+	/**
+		定跡の1つのレコード
+	*/
+	public static final class Entry
+	{
+		/** 手番の石 */
+		public final long my;
+		/** 相手の石 */
+		public final long opp;
+		/** 最善手のビット位置 なければ-1 */
+		public final int move;
+		/** 手番から見た評価値(石差の100倍) */
+		public final int score;
+		/** 対局数 */
+		public final int count;
+
+		/**
+			レコードを生成します
+			@param my 手番の石
+			@param opp 相手の石
+			@param move 最善手のビット位置 なければ-1
+			@param score 手番から見た評価値(石差の100倍)
+			@param count 対局数
+		*/
+		public Entry(long my, long opp, int move, int score, int count)
+		{
+			this.my = my;
+			this.opp = opp;
+			this.move = move;
+			this.score = score;
+			this.count = count;
+		}
+		/**
+			正規形にしたレコードを返します 手も一緒に変換します
+			@return Entry 正規形のレコード
+		*/
+		Entry canonical()
+		{
+			long[] key = new long[2];
+			int t = BitBoard.canonical(my, opp, key);
+			return new Entry(key[0], key[1], move < 0 ? -1 : BitBoard.transformPos(move, t), score, count);
+		}
+		@Override
+		public String toString()
+		{
+			return String.format("%016x %016x move:%d score:%d count:%d", my, opp, move, score, count);
+		}
+	}
+}
@@ -0,0 +1,552 @@
+package red.vivid.reversi;
+
+import java.io.*;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.function.Consumer;
+
+/**
+	定跡を作ります<br>
+	初期局面から始めて、最善の手順からの損(逸脱コスト)が窓の中にある末端の局面を、コストの小さい順に展開していきます<br>
+	展開した局面の子はすべて決まった深さで読んで評価し、評価値はネガマックスで初期局面まで戻します<br>
+	局面は手番から見て正規化したキーでまとめるので、手順前後や対称な局面は1つのノードになります(木ではなくDAGになります)<br>
+	1回に複数の局面をまとめて展開し、子の評価は複数のスレッドで並列にします<br>
+	チェックポイントのファイルを指定すると途中経過を定期的に書き出し、次に起動したときにそこから続けます
+	@author vividorange
+*/
+public class BookBuilder
+{
+	/** チェックポイントのファイルの先頭 "RVBB" */
+	private static final int CHECKPOINT_MAGIC = 0x52564242;
+	/** チェックポイントのファイルの形式の版 */
+	private static final int CHECKPOINT_VERSION = 1;
+	/** パスを表す手 */
+	private static final int PASS = -1;
+	/** 十分先の時刻までの時間(ナノ秒) 決まった深さで読ませるため */
+	private static final long NO_TIME_LIMIT = TimeUnit.HOURS.toNanos(1);
+
+	/** 子を評価するスレッド数 */
+	private int threads = Runtime.getRuntime().availableProcessors();
+	/** 子を評価する深さ */
+	private int depth = 8;
+	/** 展開する逸脱コストの上限(石差の100倍) */
+	private int window = 400;
+	/** 展開する局面の手数の上限 */
+	private int maxPly = 20;
+	/** 1回にまとめて展開する局面の数 */
+	private int batch = 64;
+	/** 置換表のサイズ(MB) */
+	private int hashSize = 64;
+	/** チェックポイントのファイル なければnull */
+	private Path checkpoint;
+	/** チェックポイントを書き出す間隔(ミリ秒) */
+	private long checkpointInterval = 600000;
+	/** 展開するたびに呼ばれる */
+	private Consumer<Progress> progress;
+
+	/** 正規化した局面ごとのノード */
+	private final Map<Node, Node> nodes = new HashMap<>();
+	/** 初期局面 */
+	private final Node root;
+	/** ネガマックスと逸脱コストを計算し直した回数 */
+	private int round;
+
+	/**
+		初期局面だけの定跡を作り始めます
+	*/
+	public BookBuilder()
+	{
+		BitBoard board = new BitBoard();
+		root = node(board.black, board.white);
+	}
+	/**
+		子を評価するスレッド数を設定します
+		@param threads スレッド数
+	*/
+	public void setThreads(int threads)
+	{
+		this.threads = Math.max(1, threads);
+	}
+	/**
+		子を評価する深さを設定します
+		@param depth 深さ
+	*/
+	public void setDepth(int depth)
+	{
+		this.depth = Math.max(1, depth);
+	}
+	/**
+		展開する逸脱コストの上限を設定します<br>
+		最善の手順からこれ以上損をする手順は展開しません
+		@param window 上限(石差の100倍)
+	*/
+	public void setWindow(int window)
+	{
+		this.window = window;
+	}
+	/**
+		展開する局面の手数の上限を設定します
+		@param maxPly 手数
+	*/
+	public void setMaxPly(int maxPly)
+	{
+		this.maxPly = maxPly;
+	}
+	/**
+		1回にまとめて展開する局面の数を設定します
+		@param batch 局面の数
+	*/
+	public void setBatch(int batch)
+	{
+		this.batch = Math.max(1, batch);
+	}
+	/**
+		置換表のサイズを設定します
+		@param megabytes サイズ(MB)
+	*/
+	public void setHashSize(int megabytes)
+	{
+		this.hashSize = megabytes;
+	}
+	/**
+		チェックポイントのファイルを設定します<br>
+		ファイルがあれば読み込んで、そこから続けます
+		@param path ファイル
+		@param interval 書き出す間隔(ミリ秒)
+		@throws IOException 読み込めないとき
+	*/
+	public void setCheckpoint(Path path, long interval) throws IOException
+	{
+		this.checkpoint = path;
+		this.checkpointInterval = interval;
+		if(Files.exists(path))load(path);
+	}
+	/**
+		展開するたびに呼ばれる処理を設定します
+		@param progress 途中経過を受け取る処理
+	*/
+	public void setProgress(Consumer<Progress> progress)
+	{
+		this.progress = progress;
+	}
+	/**
+		ノードの数を返します
+		@return int ノードの数
+	*/
+	public int size()
+	{
+		return nodes.size();
+	}
+	/**
+		ノードの数が上限になるか、展開する局面がなくなるまで展開します
+		@param maxNodes ノードの数の上限
+		@return Progress 結果
+		@throws IOException チェックポイントを書き出せないとき
+	*/
+	public Progress build(int maxNodes) throws IOException
+	{
+		long start = System.nanoTime();
+		int startSize = nodes.size();
+		long saved = System.currentTimeMillis();
+		TranspositionTable tt = new TranspositionTable(hashSize);
+		Evaluator evaluator = Evaluator.getDefault();
+		ThreadLocal<Search> searches = ThreadLocal.withInitial(() -> new Search(tt, evaluator));
+		ExecutorService pool = Executors.newFixedThreadPool(threads);
+		Progress p;
+		try
+		{
+			// 初期局面と、チェックポイントを書き出した後に作られた子を読む
+			List<Node> pending = new ArrayList<>();
+			for(Node n : nodes.values())
+			{
+				if(!n.evaluated)pending.add(n);
+			}
+			evaluate(pending, pool, searches);
+			while(true)
+			{
+				negamax();
+				List<Node> leaves = nodes.size() < maxNodes ? selectLeaves() : Collections.emptyList();
+				p = new Progress(nodes.size(), nodes.size() - startSize, root, System.nanoTime() - start);
+				if(leaves.isEmpty())break;
+
+				// 子のノードを作るのは1つのスレッドで、読むのは並列に
+				Set<Node> created = new LinkedHashSet<>();
+				for(Node leaf : leaves)
+				{
+					expand(leaf, created);
+				}
+				evaluate(created, pool, searches);
+				if(progress != null)progress.accept(p);
+
+				if(checkpoint != null && System.currentTimeMillis() - saved >= checkpointInterval)
+				{
+					save(checkpoint);
+					saved = System.currentTimeMillis();
+				}
+			}
+		}
+		catch(InterruptedException e)
+		{
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException();
+		}
+		finally
+		{
+			pool.shutdownNow();
+		}
+		if(checkpoint != null)save(checkpoint);
+		return p;
+	}
+	/**
+		展開したノードを定跡のファイルに書き出します<br>
+		対局数には、そのノードを通って展開した末端の数を書きます
+		@param path ファイル
+		@throws IOException 書き出せないとき
+	*/
+	public void write(Path path) throws IOException
+	{
+		negamax();
+		List<Book.Entry> entries = new ArrayList<>();
+		for(Node n : nodes.values())
+		{
+			if(n.children == null || n.bestMove == PASS)continue;
+			entries.add(new Book.Entry(n.my, n.opp, n.bestMove, n.value, n.visits));
+		}
+		Book.write(path, entries);
+	}
+	/**
+		正規化したノードを探し、なければ作ります
+		@param my 手番の石
+		@param opp 相手の石
+		@return Node ノード
+	*/
+	private Node node(long my, long opp)
+	{
+		long[] canonical = new long[2];
+		BitBoard.canonical(my, opp, canonical);
+		Node key = new Node(canonical[0], canonical[1]);
+		Node n = nodes.get(key);
+		if(n != null)return n;
+		nodes.put(key, key);
+		return key;
+	}
+	/**
+		ノードの子をすべて作ります 合法手がなければパスした局面を1つだけ子にします
+		@param n 展開するノード
+		@param created まだ読んでいない子を足す集合
+	*/
+	private void expand(Node n, Set<Node> created)
+	{
+		long mobility = BitBoard.getReversiblePos(n.my, n.opp);
+		int count = Math.max(1, Long.bitCount(mobility));
+		Node[] children = new Node[count];
+		int[] moves = new int[count];
+		if(mobility == 0)
+		{
+			children[0] = node(n.opp, n.my);
+			moves[0] = PASS;
+		}
+		int i = 0;
+		for(long m = mobility; m != 0; m &= m - 1, ++i)
+		{
+			long pos = m & -m;
+			long rev = BitBoard.getReverseBit(n.my, n.opp, pos);
+			children[i] = node(n.opp ^ rev, n.my ^ (pos | rev));
+			moves[i] = Long.numberOfTrailingZeros(pos);
+		}
+		for(Node c : children)
+		{
+			if(!c.evaluated)created.add(c);
+		}
+		n.children = children;
+		n.moves = moves;
+	}
+	/**
+		ノードを決まった深さで並列に読みます
+		@param list ノード
+		@param pool 読むスレッド
+		@param searches スレッドごとの探索
+		@throws InterruptedException 割り込まれたとき
+	*/
+	private void evaluate(Collection<Node> list, ExecutorService pool, ThreadLocal<Search> searches) throws InterruptedException
+	{
+		List<Callable<Void>> tasks = new ArrayList<>(list.size());
+		for(Node n : list)
+		{
+			tasks.add(() -> {
+				evaluate(n, searches.get());
+				return null;
+			});
+		}
+		for(Future<Void> f : pool.invokeAll(tasks))
+		{
+			try
+			{
+				f.get();
+			}
+			catch(ExecutionException e)
+			{
+				throw new IllegalStateException(e.getCause());
+			}
+		}
+	}
+	/**
+		1つのノードを決まった深さで読みます<br>
+		終局していれば石差、パスするなら相手の手番で読んだ値を使います
+		@param n ノード
+		@param search このスレッドの探索
+	*/
+	private void evaluate(Node n, Search search)
+	{
+		long my = n.my;
+		long opp = n.opp;
+		int sign = 1;
+		if(BitBoard.getReversiblePos(my, opp) == 0)
+		{
+			if(BitBoard.getReversiblePos(opp, my) == 0)
+			{
+				n.eval = (Long.bitCount(my) - Long.bitCount(opp)) * 100;
+				n.terminal = true;
+				n.evaluated = true;
+				return;
+			}
+			my = n.opp;
+			opp = n.my;
+			sign = -1;
+		}
+		search.start(System.nanoTime() + NO_TIME_LIMIT, depth);
+		search.run(new BitBoard(my, opp), Rule.BLACK, 1);
+		n.eval = sign * search.bestScore;
+		n.evaluated = true;
+	}
+	/**
+		展開したノードの評価値をネガマックスで計算し直します
+	*/
+	private void negamax()
+	{
+		++round;
+		negamax(root);
+	}
+	/**
+		ノードの評価値を子から計算します 同じroundで計算済みならそれを返します
+		@param n ノード
+		@return int 手番から見た評価値
+	*/
+	private int negamax(Node n)
+	{
+		if(n.round == round)return n.value;
+		n.round = round;
+		if(n.children == null)
+		{
+			n.value = n.eval;
+			return n.value;
+		}
+		int best = Integer.MIN_VALUE;
+		for(int i=0;i<n.children.length;++i)
+		{
+			int v = -negamax(n.children[i]);
+			if(v > best)
+			{
+				best = v;
+				n.bestMove = n.moves[i];
+			}
+		}
+		n.value = best;
+		return best;
+	}
+	/**
+		初期局面からの逸脱コストを最短経路で計算して、窓の中にある末端のノードをコストの小さい順に選びます<br>
+		コストは手番の側が最善の子ではなく別の子を選んだときの評価値の損の合計です<br>
+		選んだノードから初期局面までの経路のノードは、訪れた数を増やします
+		@return List&lt;Node&gt; 展開するノード
+	*/
+	private List<Node> selectLeaves()
+	{
+		PriorityQueue<Node> queue = new PriorityQueue<>((a, b) -> Integer.compare(a.cost, b.cost));
+		root.cost = 0;
+		root.parent = null;
+		root.costRound = round;
+		queue.add(root);
+		List<Node> leaves = new ArrayList<>();
+		while(!queue.isEmpty() && leaves.size() < batch)
+		{
+			Node n = queue.poll();
+			if(n.settled == round)continue;
+			n.settled = round;
+			if(n.children == null)
+			{
+				if(!n.terminal && Long.bitCount(n.my | n.opp) - 4 < maxPly)leaves.add(n);
+				continue;
+			}
+			for(Node c : n.children)
+			{
+				int cost = n.cost + (n.value + c.value);
+				if(cost > window)continue;
+				if(c.costRound != round || cost < c.cost)
+				{
+					c.cost = cost;
+					c.parent = n;
+					c.costRound = round;
+					queue.add(c);
+				}
+			}
+		}
+		for(Node leaf : leaves)
+		{
+			for(Node n = leaf; n != null; n = n.parent)++n.visits;
+		}
+		return leaves;
+	}
+	/**
+		チェックポイントを書き出します<br>
+		書き終わってから置き換えるので、途中で止まっても前のチェックポイントは壊れません
+		@param path ファイル
+		@throws IOException 書き出せないとき
+	*/
+	private void save(Path path) throws IOException
+	{
+		Path tmp = path.resolveSibling(path.getFileName() + ".tmp");
+		try(DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tmp), 1 << 16)))
+		{
+			out.writeInt(CHECKPOINT_MAGIC);
+			out.writeInt(CHECKPOINT_VERSION);
+			out.writeInt(nodes.size());
+			for(Node n : nodes.values())
+			{
+				out.writeLong(n.my);
+				out.writeLong(n.opp);
+				out.writeInt(n.eval);
+				out.writeInt(n.visits);
+				out.writeByte((n.evaluated ? 1 : 0) | (n.terminal ? 2 : 0) | (n.children != null ? 4 : 0));
+			}
+		}
+		Files.move(tmp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+	}
+	/**
+		チェックポイントを読み込みます 展開したノードの子は局面から作り直します
+		@param path ファイル
+		@throws IOException 読み込めないか、形式が違うとき
+	*/
+	private void load(Path path) throws IOException
+	{
+		List<Node> expanded = new ArrayList<>();
+		try(DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(path), 1 << 16)))
+		{
+			if(in.readInt() != CHECKPOINT_MAGIC)throw new IOException(path + ": チェックポイントではありません");
+			int version = in.readInt();
+			if(version != CHECKPOINT_VERSION)throw new IOException(path + ": 知らない版です " + version);
+			int size = in.readInt();
+			for(int i=0;i<size;++i)
+			{
+				Node n = node(in.readLong(), in.readLong());
+				n.eval = in.readInt();
+				n.visits = in.readInt();
+				int flags = in.readByte();
+				n.evaluated = (flags & 1) != 0;
+				n.terminal = (flags & 2) != 0;
+				if((flags & 4) != 0)expanded.add(n);
+			}
+		}
+		// まだ読んでいない子は次のbuildで読む
+		Set<Node> created = new HashSet<>();
+		for(Node n : expanded)
+		{
+			expand(n, created);
+		}
+	}
+
+	/**
+		定跡の局面
+	*/
+	private static final class Node
+	{
+		/** 手番の石(正規形) */
+		final long my;
+		/** 相手の石(正規形) */
+		final long opp;
+		/** 決まった深さで読んだ手番から見た評価値 */
+		int eval;
+		/** evalを読んだか */
+		boolean evaluated;
+		/** 終局しているか */
+		boolean terminal;
+		/** 子 展開していなければnull */
+		Node[] children;
+		/** 子に進む手(正規形のビット位置かPASS) */
+		int[] moves;
+		/** ネガマックスで戻した手番から見た評価値 */
+		int value;
+		/** 最善手 */
+		int bestMove = PASS;
+		/** valueを計算したround */
+		int round;
+		/** 初期局面からの逸脱コスト */
+		int cost;
+		/** costを計算したround */
+		int costRound;
+		/** 最短経路を確定したround */
+		int settled;
+		/** 最短経路の親 */
+		Node parent;
+		/** このノードを通って展開した末端の数 */
+		int visits;
+
+		Node(long my, long opp)
+		{
+			this.my = my;
+			this.opp = opp;
+		}
+		@Override
+		public boolean equals(Object o)
+		{
+			if(!(o instanceof Node))return false;
+			Node n = (Node)o;
+			return my == n.my && opp == n.opp;
+		}
+		@Override
+		public int hashCode()
+		{
+			return Long.hashCode(my * 0x9e3779b97f4a7c15L ^ opp);
+		}
+	}
+
+	/**
+		定跡を作っている途中経過
+	*/
+	public static final class Progress
+	{
+		/** ノードの数 */
+		public final int nodes;
+		/** このbuildで増えたノードの数 */
+		public final int added;
+		/** 初期局面の評価値(黒から見た石差の100倍) */
+		public final int score;
+		/** 初期局面の最善手 */
+		public final int bestMove;
+		/** かかった時間(ナノ秒) */
+		public final long elapsed;
+
+		Progress(int nodes, int added, Node root, long elapsed)
+		{
+			this.nodes = nodes;
+			this.added = added;
+			this.score = root.value;
+			this.bestMove = root.bestMove;
+			this.elapsed = elapsed;
+		}
+		/**
+			1秒あたりに増えたノードの数を返します
+			@return double ノード数/秒
+		*/
+		public double getNodesPerSecond()
+		{
+			return elapsed > 0 ? added * 1e9 / elapsed : 0;
+		}
+		@Override
+		public String toString()
+		{
+			return String.format("nodes:%d score:%d (%.1f nodes/s)", nodes, score, getNodesPerSecond());
+		}
+	}
+}
@@ -0,0 +1,501 @@
+package red.vivid.reversi;
+
+/**
+	終盤の完全読み<br>
+	石差をそのまま評価値にしたネガマックスアルファベータ法で最後まで読みます<br>
+	窓を(-1,1)にすると勝ち負け引き分けだけを読みます(WLD)<br>
+	残り4マス以下は合法手を作らずに空きマスを直接試す専用のルーチンで読みます<br>
+	verifyで、読んだ石差が枝刈りをしない全探索と一致するかを確かめられます
+	@author vividorange
+*/
+public class Endgame
+{
+	/** 石差の上限を超える値 */
+	static final int INF = 65;
+	/** 時間切れを確認するノード間隔 */
+	private static final int CHECK_INTERVAL = 4095;
+	/** この空きマス数以上では相手の合法手が少なくなる手から読む */
+	private static final int FASTEST_FIRST = 7;
+	/** この空きマス数以上では置換表を使う */
+	private static final int HASH_EMPTIES = 10;
+	/** 4つの象限 */
+	private static final long[] QUADRANT =
+	{
+		0x000000000f0f0f0fL, 0x00000000f0f0f0f0L,
+		0x0f0f0f0f00000000L, 0xf0f0f0f000000000L,
+	};
+	/** 角 */
+	private static final long CORNER = 0x8100000000000081L;
+
+	/** 探索を打ち切る時刻(System.nanoTime) */
+	private final long deadline;
+	/** 置換表 評価値は石差の100倍で書き込みます */
+	private final TranspositionTable tt;
+	/** 空きマス数ごとの手の並べ替え用バッファ */
+	private final int[][] moves = new int[64][64];
+	/** 空きマス数ごとの並べ替えキー */
+	private final int[][] keys = new int[64][64];
+
+	/** 探索したノード数 */
+	long nodes;
+	/** 時間切れで打ち切ったか */
+	boolean aborted;
+	/** 最善手のビット位置(-1は未決定) */
+	int bestMove = -1;
+
+	/**
+		完全読みを生成します
+		@param deadline 探索を打ち切る時刻(System.nanoTime)
+		@param tt 置換表
+	*/
+	Endgame(long deadline, TranspositionTable tt)
+	{
+		this.deadline = deadline;
+		this.tt = tt;
+	}
+	/**
+		ルート局面を最後まで読みます<br>
+		完全読みなら窓は(-64,64)、勝ち負け引き分けだけなら(-1,1)を渡します
+		@param board 読むボード
+		@param color 手番の色
+		@param alpha 下限
+		@param beta 上限
+		@param firstMove 最初に読む手(なければ-1)
+		@return int 手番から見た石差 abortedなら意味を持ちません
+	*/
+	int solve(BitBoard board, boolean color, int alpha, int beta, int firstMove)
+	{
+		long my = color == Rule.BLACK ? board.black : board.white;
+		long opp = color == Rule.BLACK ? board.white : board.black;
+		long mobility = BitBoard.getReversiblePos(my, opp);
+		if(mobility == 0)
+		{
+			// 打てないのでパスして相手から読む 最善手は-1のまま
+			return -search(opp, my, -beta, -alpha, true, !color, board.getHash(color) ^ BitBoard.hashSideDelta());
+		}
+		int empties = board.getEmptyCount();
+		int ttMove = firstMove < 0 ? TranspositionTable.NO_MOVE : firstMove;
+		int n = order(my, opp, mobility, empties, ttMove);
+		int[] list = java.util.Arrays.copyOf(moves[empties], n);
+		long key = board.getHash(color);
+		int best = -INF;
+		for(int i=0;i<n;++i)
+		{
+			long pos = 1L << list[i];
+			long rev = BitBoard.getReverseBit(my, opp, pos);
+			long next = key ^ BitBoard.hashDelta(color, pos, rev) ^ BitBoard.hashSideDelta();
+			int v = -search(opp ^ rev, my ^ (pos | rev), -beta, -Math.max(alpha, best), false, !color, next);
+			if(aborted)return 0;
+			if(v > best)
+			{
+				best = v;
+				bestMove = list[i];
+				if(v >= beta)break;
+			}
+		}
+		return best;
+	}
+	/**
+		局面を読みます 空きマスが4以下ならsearchFewに任せます
+		@param my 手番の石
+		@param opp 相手の石
+		@param alpha 下限
+		@param beta 上限
+		@param passed 直前の手がパスか
+		@param color 手番の色
+		@param key 手番を含めた局面のハッシュ値 子の局面では差分で更新します
+		@return int 手番から見た石差
+	*/
+	private int search(long my, long opp, int alpha, int beta, boolean passed, boolean color, long key)
+	{
+		long empty = ~(my | opp);
+		int empties = Long.bitCount(empty);
+		// 空きマスがなければ終局
+		if(empties == 0)return diff(my, opp);
+		if(empties <= 4)return searchFew(my, opp, alpha, beta, empty, empties, passed);
+
+		if((++nodes & CHECK_INTERVAL) == 0 && System.nanoTime() - deadline > 0)
+		{
+			aborted = true;
+		}
+		if(aborted)return 0;
+
+		long mobility = BitBoard.getReversiblePos(my, opp);
+		if(mobility == 0)
+		{
+			if(passed)return diff(my, opp);
+			return -search(opp, my, -beta, -alpha, true, !color, key ^ BitBoard.hashSideDelta());
+		}
+
+		int ttMove = TranspositionTable.NO_MOVE;
+		if(empties >= HASH_EMPTIES)
+		{
+			long data = tt.probe(key);
+			if(data != 0)
+			{
+				ttMove = TranspositionTable.moveOf(data);
+				if(TranspositionTable.depthOf(data) >= empties)
+				{
+					int v = TranspositionTable.scoreOf(data) / 100;
+					int bound = TranspositionTable.boundOf(data);
+					if(bound == TranspositionTable.EXACT)return v;
+					if(bound == TranspositionTable.LOWER && v > alpha)alpha = v;
+					else if(bound == TranspositionTable.UPPER && v < beta)beta = v;
+					if(alpha >= beta)return v;
+				}
+			}
+		}
+
+		int alpha0 = alpha;
+		int n = order(my, opp, mobility, empties, ttMove);
+		int[] list = moves[empties];
+		int best = -INF;
+		int bestMove = TranspositionTable.NO_MOVE;
+		for(int i=0;i<n;++i)
+		{
+			long pos = 1L << list[i];
+			long rev = BitBoard.getReverseBit(my, opp, pos);
+			long next = key ^ BitBoard.hashDelta(color, pos, rev) ^ BitBoard.hashSideDelta();
+			int v = -search(opp ^ rev, my ^ (pos | rev), -beta, -alpha, false, !color, next);
+			if(v > best)
+			{
+				best = v;
+				if(v > alpha)
+				{
+					alpha = v;
+					bestMove = list[i];
+					if(alpha >= beta)break;
+				}
+			}
+		}
+		if(aborted)return 0;
+		if(empties >= HASH_EMPTIES)
+		{
+			int bound = best >= beta ? TranspositionTable.LOWER
+				: best > alpha0 ? TranspositionTable.EXACT : TranspositionTable.UPPER;
+			tt.store(key, bestMove, empties, bound, best * 100);
+		}
+		return best;
+	}
+	/**
+		合法手をmoves[empties]に並べます<br>
+		置換表の手を最初に、空きマスが多いときは相手の合法手が少なくなる手から、
+		少ないときは空きマスが奇数の象限の手から読みます
+		@param my 手番の石
+		@param opp 相手の石
+		@param mobility 合法手
+		@param empties 空きマスの数
+		@param ttMove 最初に読む手(なければNO_MOVE)
+		@return int 手の数
+	*/
+	private int order(long my, long opp, long mobility, int empties, int ttMove)
+	{
+		int[] list = moves[empties];
+		int[] key = keys[empties];
+		int n = 0;
+		if(ttMove != TranspositionTable.NO_MOVE && (mobility >>> ttMove & 1) != 0)
+		{
+			list[n++] = ttMove;
+			mobility &= ~(1L << ttMove);
+		}
+		int first = n;
+		long parity = parity(~(my | opp));
+		for(long m = mobility; m != 0; m &= m - 1)
+		{
+			int k = Long.numberOfTrailingZeros(m);
+			long pos = 1L << k;
+			int v = (parity & pos) != 0 ? 0 : 1;
+			if(empties >= FASTEST_FIRST)
+			{
+				long rev = BitBoard.getReverseBit(my, opp, pos);
+				long oppMobility = BitBoard.getReversiblePos(opp ^ rev, my ^ (pos | rev));
+				v += (Long.bitCount(oppMobility) + Long.bitCount(oppMobility & CORNER)) * 4;
+				if((pos & CORNER) != 0)v -= 2;
+			}
+			// 挿入ソート
+			int i = n++;
+			for(;i>first && key[i-1] > v;--i)
+			{
+				list[i] = list[i-1];
+				key[i] = key[i-1];
+			}
+			list[i] = k;
+			key[i] = v;
+		}
+		return n;
+	}
+	/**
+		空きマスが奇数の象限のビットを返します
+		@param empty 空きマス
+		@return long 空きマスが奇数の象限をすべて立てたビット
+	*/
+	private static long parity(long empty)
+	{
+		long parity = 0;
+		for(long q : QUADRANT)
+		{
+			if((Long.bitCount(empty & q) & 1) != 0)parity |= q;
+		}
+		return parity;
+	}
+	/**
+		空きマスが1以上4以下の局面を、空きマスを奇数の象限から並べて専用のルーチンに渡します
+		@param my 手番の石
+		@param opp 相手の石
+		@param alpha 下限
+		@param beta 上限
+		@param empty 空きマス
+		@param empties 空きマスの数
+		@param passed 直前の手がパスか
+		@return int 手番から見た石差
+	*/
+	private int searchFew(long my, long opp, int alpha, int beta, long empty, int empties, boolean passed)
+	{
+		long parity = parity(empty);
+		long rest = empty;
+		int x1 = next(rest, parity);
+		rest &= ~(1L << x1);
+		if(empties == 1)return solve1(my, opp, x1);
+		int x2 = next(rest, parity);
+		rest &= ~(1L << x2);
+		if(empties == 2)return solve2(my, opp, alpha, beta, x1, x2, passed);
+		int x3 = next(rest, parity);
+		rest &= ~(1L << x3);
+		if(empties == 3)return solve3(my, opp, alpha, beta, x1, x2, x3, passed);
+		int x4 = Long.numberOfTrailingZeros(rest);
+		return solve4(my, opp, alpha, beta, x1, x2, x3, x4, passed);
+	}
+	/**
+		奇数の象限を優先して次の空きマスを返します
+		@param rest 残りの空きマス
+		@param parity 空きマスが奇数の象限
+		@return int ビット位置
+	*/
+	private static int next(long rest, long parity)
+	{
+		long odd = rest & parity;
+		return Long.numberOfTrailingZeros(odd != 0 ? odd : rest);
+	}
+	/**
+		空きマスが4つの局面を読みます
+	*/
+	private int solve4(long my, long opp, int alpha, int beta, int x1, int x2, int x3, int x4, boolean passed)
+	{
+		++nodes;
+		int best = -INF;
+		long pos, rev;
+		int v;
+
+		pos = 1L << x1;
+		if((rev = BitBoard.getReverseBit(my, opp, pos)) != 0)
+		{
+			v = -solve3(opp ^ rev, my ^ (pos | rev), -beta, -alpha, x2, x3, x4, false);
+			if(v >= beta)return v;
+			best = v;
+			if(v > alpha)alpha = v;
+		}
+		pos = 1L << x2;
+		if((rev = BitBoard.getReverseBit(my, opp, pos)) != 0)
+		{
+			v = -solve3(opp ^ rev, my ^ (pos | rev), -beta, -alpha, x1, x3, x4, false);
+			if(v >= beta)return v;
+			if(v > best)
+			{
+				best = v;
+				if(v > alpha)alpha = v;
+			}
+		}
+		pos = 1L << x3;
+		if((rev = BitBoard.getReverseBit(my, opp, pos)) != 0)
+		{
+			v = -solve3(opp ^ rev, my ^ (pos | rev), -beta, -alpha, x1, x2, x4, false);
+			if(v >= beta)return v;
+			if(v > best)
+			{
+				best = v;
+				if(v > alpha)alpha = v;
+			}
+		}
+		pos = 1L << x4;
+		if((rev = BitBoard.getReverseBit(my, opp, pos)) != 0)
+		{
+			v = -solve3(opp ^ rev, my ^ (pos | rev), -beta, -alpha, x1, x2, x3, false);
+			if(v > best)best = v;
+		}
+		if(best == -INF)
+		{
+			if(passed)return diff(my, opp);
+			return -solve4(opp, my, -beta, -alpha, x1, x2, x3, x4, true);
+		}
+		return best;
+	}
+	/**
+		空きマスが3つの局面を読みます
+	*/
+	private int solve3(long my, long opp, int alpha, int beta, int x1, int x2, int x3, boolean passed)
+	{
+		++nodes;
+		int best = -INF;
+		long pos, rev;
+		int v;
+
+		pos = 1L << x1;
+		if((rev = BitBoard.getReverseBit(my, opp, pos)) != 0)
+		{
+			v = -solve2(opp ^ rev, my ^ (pos | rev), -beta, -alpha, x2, x3, false);
+			if(v >= beta)return v;
+			best = v;
+			if(v > alpha)alpha = v;
+		}
+		pos = 1L << x2;
+		if((rev = BitBoard.getReverseBit(my, opp, pos)) != 0)
+		{
+			v = -solve2(opp ^ rev, my ^ (pos | rev), -beta, -alpha, x1, x3, false);
+			if(v >= beta)return v;
+			if(v > best)
+			{
+				best = v;
+				if(v > alpha)alpha = v;
+			}
+		}
+		pos = 1L << x3;
+		if((rev = BitBoard.getReverseBit(my, opp, pos)) != 0)
+		{
+			v = -solve2(opp ^ rev, my ^ (pos | rev), -beta, -alpha, x1, x2, false);
+			if(v > best)best = v;
+		}
+		if(best == -INF)
+		{
+			if(passed)return diff(my, opp);
+			return -solve3(opp, my, -beta, -alpha, x1, x2, x3, true);
+		}
+		return best;
+	}
+	/**
+		空きマスが2つの局面を読みます
+	*/
+	private int solve2(long my, long opp, int alpha, int beta, int x1, int x2, boolean passed)
+	{
+		++nodes;
+		int best = -INF;
+		long pos, rev;
+		int v;
+
+		pos = 1L << x1;
+		if((rev = BitBoard.getReverseBit(my, opp, pos)) != 0)
+		{
+			v = -solve1(opp ^ rev, my ^ (pos | rev), x2);
+			if(v >= beta)return v;
+			best = v;
+		}
+		pos = 1L << x2;
+		if((rev = BitBoard.getReverseBit(my, opp, pos)) != 0)
+		{
+			v = -solve1(opp ^ rev, my ^ (pos | rev), x1);
+			if(v > best)best = v;
+		}
+		if(best == -INF)
+		{
+			if(passed)return diff(my, opp);
+			return -solve2(opp, my, -beta, -alpha, x1, x2, true);
+		}
+		return best;
+	}
+	/**
+		空きマスが1つの局面を読みます<br>
+		手番が打てなければ相手が打ち、どちらも打てなければそのまま終局です
+	*/
+	private int solve1(long my, long opp, int x)
+	{
+		++nodes;
+		long pos = 1L << x;
+		int score = Long.bitCount(my) - Long.bitCount(opp);
+		long rev = BitBoard.getReverseBit(my, opp, pos);
+		if(rev != 0)return score + 2 * Long.bitCount(rev) + 1;
+		rev = BitBoard.getReverseBit(opp, my, pos);
+		if(rev != 0)return score - 2 * Long.bitCount(rev) - 1;
+		return score;
+	}
+	/**
+		終局した盤面の石差を返します
+		@param my 手番の石
+		@param opp 相手の石
+		@return int 手番から見た石差
+	*/
+	private static int diff(long my, long opp)
+	{
+		return Long.bitCount(my) - Long.bitCount(opp);
+	}
+	/**
+		ランダムな局面を読んで、枝刈りをしない全探索の石差と比べます<br>
+		空きマスの数ごとに、完全読みの窓(-64,64)の石差と、WLDの窓(-1,1)の符号を確かめます
+		@param maxEmpties 空きマスの数の上限 1からこの数まで確かめます
+		@param positions 空きマスの数ごとの局面の数
+		@param seed 乱数の種
+		@return String 最初に食い違った局面 すべて同じならnull
+	*/
+	public static String verify(int maxEmpties, int positions, long seed)
+	{
+		java.util.SplittableRandom random = new java.util.SplittableRandom(seed);
+		TranspositionTable tt = new TranspositionTable(1);
+		for(int empties=1;empties<=maxEmpties;++empties)
+		{
+			for(int n=0;n<positions;++n)
+			{
+				long black = 0;
+				long white = 0;
+				int[] squares = new int[64];
+				for(int k=0;k<64;++k)squares[k] = k;
+				// 空きマスを選んで、残りを黒か白で埋める
+				for(int k=0;k<64 - empties;++k)
+				{
+					int j = k + random.nextInt(64 - k);
+					int x = squares[j];
+					squares[j] = squares[k];
+					squares[k] = x;
+					if(random.nextBoolean())black |= 1L << x;
+					else white |= 1L << x;
+				}
+				boolean color = random.nextBoolean();
+				BitBoard board = new BitBoard(black, white);
+				long my = color == Rule.BLACK ? black : white;
+				long opp = color == Rule.BLACK ? white : black;
+				int expected = minimax(my, opp, false);
+				Endgame exact = new Endgame(Long.MAX_VALUE, tt);
+				int v = exact.solve(board, color, -64, 64, -1);
+				Endgame wld = new Endgame(Long.MAX_VALUE, tt);
+				int w = wld.solve(board, color, -1, 1, -1);
+				if(v != expected || Integer.signum(w) != Integer.signum(expected))
+				{
+					return String.format("black:%016x white:%016x color:%c exact:%d wld:%d expected:%d",
+						black, white, color == Rule.BLACK ? 'x' : 'o', v, w, expected);
+				}
+			}
+		}
+		return null;
+	}
+	/**
+		枝刈りをせずに最後まで読みます
+		@param my 手番の石
+		@param opp 相手の石
+		@param passed 直前の手がパスか
+		@return int 手番から見た石差
+	*/
+	private static int minimax(long my, long opp, boolean passed)
+	{
+		long mobility = BitBoard.getReversiblePos(my, opp);
+		if(mobility == 0)
+		{
+			if(passed)return diff(my, opp);
+			return -minimax(opp, my, true);
+		}
+		int best = -INF;
+		for(long m = mobility; m != 0; m &= m - 1)
+		{
+			long pos = m & -m;
+			long rev = BitBoard.getReverseBit(my, opp, pos);
+			best = Math.max(best, -minimax(opp ^ rev, my ^ (pos | rev), false));
+		}
+		return best;
+	}
+}
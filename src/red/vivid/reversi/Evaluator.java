@@ -0,0 +1,242 @@
+package red.vivid.reversi;
+
+import java.io.IOException;
+import java.nio.*;
+import java.nio.channels.FileChannel;
+import java.nio.file.*;
+import java.util.zip.CRC32;
+
+/**
+	パターンの重みを引いて足し合わせる評価関数<br>
+	重みは打った手数で分けた段階ごとに持っていて、1つの段階はPattern.SIZE個のパターンの重みと合法手の数の差の重み1つです<br>
+	評価値は黒から見た石差の100倍で、±MAX_SCOREに収めます<br>
+	重みをいくつ足しても、読み切った石差(最大±6400)やSearch.INFを越えず、置換表の16ビットの評価値にも収まります<br>
+	重みのファイルは次の形式で、すべてリトルエンディアンです<br>
+	<pre>
+	int   MAGIC
+	int   VERSION
+	int   段階の数(PHASES)
+	int   1つの段階の重みの数(PHASE_SIZE)
+	int   重みのCRC32
+	short 重み[PHASES * PHASE_SIZE]
+	</pre>
+	loadはファイルをFileChannel.mapで読み取り専用に写像して、重みをそのままShortBufferとして使います<br>
+	1つずつ読み込まないので起動が速く、同じファイルを使う複数のJVMはOSのページキャッシュを共有します<br>
+	CRC32はすべてのページに触れるので、確かめるのは学習の入力に使うときなど、load(path, true)で指定したときだけです
+	@author vividorange
+*/
+public class Evaluator
+{
+	/** 重みのファイルを指定するシステムプロパティの名前 */
+	public static final String PROPERTY = "red.vivid.reversi.weights";
+	/** 重みのファイルの先頭 "RVEW" */
+	public static final int MAGIC = 0x57455652;
+	/** 重みのファイルの形式の版 */
+	public static final int VERSION = 1;
+	/** 重みのファイルのヘッダーのバイト数 */
+	public static final int HEADER = 20;
+
+	/** 段階の数 */
+	public static final int PHASES = 15;
+	/** 1つの段階の重みの数 */
+	public static final int PHASE_SIZE = Pattern.SIZE + 1;
+	/** 段階ごとの合法手の数の差の重みの位置 */
+	public static final int MOBILITY = Pattern.SIZE;
+	/** すべての重みの数 */
+	public static final int WEIGHTS = PHASES * PHASE_SIZE;
+	/** 評価値の絶対値の上限 石を全部取ったときの石差の100倍より小さくします */
+	public static final int MAX_SCORE = 64 * 100 - 1;
+
+	/** 既定の評価関数 */
+	private static Evaluator defaultEvaluator;
+
+	/** 重み */
+	private final ShortBuffer weights;
+
+	/**
+		重みを指定して評価関数を生成します
+		@param weights 重み 長さはWEIGHTSです
+	*/
+	public Evaluator(ShortBuffer weights)
+	{
+		if(weights.capacity() != WEIGHTS)throw new IllegalArgumentException("重みの数が違います:" + weights.capacity());
+		this.weights = weights;
+	}
+	/**
+		既定の評価関数を返します<br>
+		システムプロパティ red.vivid.reversi.weights で重みのファイルを指定していればそれを読み込み、
+		していなければマスの重みと合法手の数の差から作ります
+		@return Evaluator 評価関数
+		@throws java.io.UncheckedIOException ファイルを読み込めないとき
+	*/
+	public static synchronized Evaluator getDefault()
+	{
+		if(defaultEvaluator == null)
+		{
+			String path = System.getProperty(PROPERTY);
+			try
+			{
+				defaultEvaluator = path != null?
+					load(Paths.get(path)):
+					new Evaluator(ShortBuffer.wrap(defaultWeights()));
+			}
+			catch(IOException e)
+			{
+				throw new java.io.UncheckedIOException(e);
+			}
+		}
+		return defaultEvaluator;
+	}
+	/**
+		重みのファイルを写像して評価関数を生成します<br>
+		ヘッダーと長さだけを確かめます 重みは使われたページから読み込まれます
+		@param path ファイル
+		@return Evaluator 評価関数
+		@throws IOException 読み込めないか、形式が違うとき
+	*/
+	public static Evaluator load(Path path) throws IOException
+	{
+		return load(path, false);
+	}
+	/**
+		重みのファイルを写像して評価関数を生成します<br>
+		ヘッダーと長さを確かめ、指定すればCRC32も確かめます
+		@param path ファイル
+		@param verify CRC32を確かめるか ファイルをすべて読むので遅くなります
+		@return Evaluator 評価関数
+		@throws IOException 読み込めないか、形式が違うか、壊れているとき
+	*/
+	public static Evaluator load(Path path, boolean verify) throws IOException
+	{
+		try(FileChannel channel = FileChannel.open(path, StandardOpenOption.READ))
+		{
+			long size = channel.size();
+			if(size != HEADER + WEIGHTS * 2L)throw new IOException(path + ": 大きさが違います " + size);
+			// 写像はチャネルを閉じても有効
+			ByteBuffer map = channel.map(FileChannel.MapMode.READ_ONLY, 0, size).order(ByteOrder.LITTLE_ENDIAN);
+			if(map.getInt(0) != MAGIC)throw new IOException(path + ": 重みのファイルではありません");
+			if(map.getInt(4) != VERSION)throw new IOException(path + ": 知らない版です " + map.getInt(4));
+			if(map.getInt(8) != PHASES || map.getInt(12) != PHASE_SIZE)
+			{
+				throw new IOException(path + ": パターンの定義が違います");
+			}
+			map.position(HEADER);
+			ByteBuffer data = map.slice().order(ByteOrder.LITTLE_ENDIAN);
+			if(verify)
+			{
+				CRC32 crc = new CRC32();
+				crc.update(data.duplicate());
+				if((int)crc.getValue() != map.getInt(16))throw new IOException(path + ": CRC32が合いません");
+			}
+			return new Evaluator(data.asShortBuffer());
+		}
+	}
+	/**
+		重みをファイルに書き出します
+		@param path ファイル
+		@throws IOException 書き出せないとき
+	*/
+	public void save(Path path) throws IOException
+	{
+		ByteBuffer data = ByteBuffer.allocate(WEIGHTS * 2).order(ByteOrder.LITTLE_ENDIAN);
+		data.asShortBuffer().put(weights.duplicate().clear());
+		CRC32 crc = new CRC32();
+		crc.update(data.duplicate());
+		ByteBuffer header = ByteBuffer.allocate(HEADER).order(ByteOrder.LITTLE_ENDIAN);
+		header.putInt(MAGIC).putInt(VERSION).putInt(PHASES).putInt(PHASE_SIZE).putInt((int)crc.getValue());
+		header.flip();
+		try(FileChannel channel = FileChannel.open(path,
+			StandardOpenOption.WRITE, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING))
+		{
+			while(header.hasRemaining())channel.write(header);
+			while(data.hasRemaining())channel.write(data);
+		}
+	}
+	/**
+		Search.WEIGHTと同じ評価になる重みを作ります<br>
+		マスの重みをそのマスを含むパターンの数で割って、パターンごとに配ります
+		@return short[] 重み
+	*/
+	private static short[] defaultWeights()
+	{
+		short[] w = new short[WEIGHTS];
+		for(int type=0;type<Pattern.TYPES;++type)
+		{
+			// 種類の最初のパターンは変換していない形
+			int first = 0;
+			while(Pattern.TYPE_OF[first] != type)++first;
+			int[] s = Pattern.SQUARES[first];
+			for(int v=0;v<Pattern.TYPE_SIZE[type];++v)
+			{
+				double sum = 0;
+				for(int j=0, x=v;j<s.length;++j, x/=3)
+				{
+					int d = x % 3;
+					if(d == 0)continue;
+					double share = (double)Search.WEIGHT[s[j]] / Pattern.coverage(s[j]);
+					sum += d == 1 ? share : -share;
+				}
+				w[Pattern.TYPE_OFFSET[type] + v] = (short)Math.round(sum);
+			}
+		}
+		w[MOBILITY] = 20;
+		for(int p=1;p<PHASES;++p)
+		{
+			System.arraycopy(w, 0, w, p * PHASE_SIZE, PHASE_SIZE);
+		}
+		return w;
+	}
+	/**
+		打った手数から段階を返します
+		@param turnCount 打った手数
+		@return int 段階(0～PHASES-1)
+	*/
+	public static int phase(int turnCount)
+	{
+		return Math.min(Math.max(turnCount, 0) / 4, PHASES - 1);
+	}
+	/**
+		重みを返します
+		@return ShortBuffer 重み
+	*/
+	public ShortBuffer getWeights()
+	{
+		return weights;
+	}
+	/**
+		パターンのインデックスから評価します
+		@param indices パターンのインデックス
+		@param black 黒い石
+		@param white 白い石
+		@return int 黒から見た評価値(±MAX_SCORE)
+	*/
+	public int evaluate(int[] indices, long black, long white)
+	{
+		int base = phase(Long.bitCount(black | white) - 4) * PHASE_SIZE;
+		int score = 0;
+		for(int i=0;i<Pattern.COUNT;++i)
+		{
+			score += weights.get(base + Pattern.OFFSET_OF[i] + indices[i]);
+		}
+		int mobility = Long.bitCount(BitBoard.getReversiblePos(black, white))
+			- Long.bitCount(BitBoard.getReversiblePos(white, black));
+		score += weights.get(base + MOBILITY) * mobility;
+		return Math.max(-MAX_SCORE, Math.min(MAX_SCORE, score));
+	}
+	/**
+		ボードを評価します<br>
+		ボードがパターンを追跡していればそのインデックスを使い、していなければ計算します
+		@param board ボード
+		@return int 黒から見た評価値(±MAX_SCORE)
+	*/
+	public int evaluate(BitBoard board)
+	{
+		int[] indices = board.getPatterns();
+		if(indices == null)
+		{
+			indices = new int[Pattern.COUNT];
+			Pattern.indices(board.black, board.white, indices);
+		}
+		return evaluate(indices, board.black, board.white);
+	}
+}
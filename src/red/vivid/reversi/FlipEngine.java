@@ -0,0 +1,90 @@
+package red.vivid.reversi;
+
+/**
+	石を置いたときに裏返る石を計算する方式<br>
+	どの実装も同じ結果を返すので、JVMとCPUに合わせて一番速いものを選べます<br>
+	BitBoardはシステムプロパティ red.vivid.reversi.flip (loop, kogge, table) で選んだものを使います
+	@author vividorange
+*/
+public interface FlipEngine
+{
+	/** システムプロパティの名前 */
+	String PROPERTY = "red.vivid.reversi.flip";
+	/** 方式の名前の一覧 */
+	String[] NAMES = { "loop", "kogge", "table" };
+
+	/**
+		裏返す色の情報と返される色の情報と石を置く場所を渡して返せる石のビットを返します
+		@param my 裏返す色
+		@param opp 裏返される色
+		@param pos 石を置く場所
+		@return long 裏返せる石 rev
+	*/
+	long flip(long my, long opp, long pos);
+
+	/**
+		名前から実装を返します
+		@param name loop, kogge, tableのいずれか
+		@return FlipEngine 実装
+		@throws IllegalArgumentException 知らない名前のとき
+	*/
+	static FlipEngine forName(String name)
+	{
+		switch(name)
+		{
+		case "loop":
+			return new LoopFlip();
+		case "kogge":
+			return new KoggeStoneFlip();
+		case "table":
+			return new LineTableFlip();
+		default:
+			throw new IllegalArgumentException("unknown flip engine: " + name);
+		}
+	}
+	/**
+		すべての方式が同じ結果を返すかをランダムな局面で確かめます<br>
+		局面ごとに石の密度を変えて、すべての空きマスに置いたときの裏返る石をloopの結果と比べます
+		@param positions 局面の数
+		@param seed 乱数の種
+		@return String 最初に食い違った方式と局面 すべて同じならnull
+	*/
+	static String verify(int positions, long seed)
+	{
+		FlipEngine base = forName(NAMES[0]);
+		FlipEngine[] engines = new FlipEngine[NAMES.length];
+		for(int i=0;i<NAMES.length;++i)
+		{
+			engines[i] = forName(NAMES[i]);
+		}
+		java.util.SplittableRandom random = new java.util.SplittableRandom(seed);
+		for(int n=0;n<positions;++n)
+		{
+			// 空きマスの割合を局面ごとに変えて、序盤から終盤までの形を作る
+			double empty = random.nextDouble();
+			long my = 0;
+			long opp = 0;
+			for(int k=0;k<64;++k)
+			{
+				if(random.nextDouble() < empty)continue;
+				if(random.nextBoolean())my |= 1L << k;
+				else opp |= 1L << k;
+			}
+			for(long empties = ~(my | opp); empties != 0; empties &= empties - 1)
+			{
+				long pos = empties & -empties;
+				long expected = base.flip(my, opp, pos);
+				for(int i=0;i<engines.length;++i)
+				{
+					long rev = engines[i].flip(my, opp, pos);
+					if(rev != expected)
+					{
+						return String.format("%s my:%016x opp:%016x pos:%d rev:%016x expected:%016x",
+							NAMES[i], my, opp, Long.numberOfTrailingZeros(pos), rev, expected);
+					}
+				}
+			}
+		}
+		return null;
+	}
+}
@@ -0,0 +1,127 @@
+package red.vivid.reversi;
+
+/**
+	コンソールを使わない対局の進行役<br>
+	2人のPlayerに交互に手を選ばせて、終局まで進めます<br>
+	ループの中ではオブジェクトを作らないので、ランダム対局を大量に回すのにも使えます
+	@author vividorange
+*/
+public class Game
+{
+	/** 黒のプレイヤー */
+	private final Player black;
+	/** 白のプレイヤー */
+	private final Player white;
+	/** 進行を受け取る なければnull */
+	private GameListener listener;
+	/** 対局中のボード */
+	private final BitBoard board = new BitBoard();
+
+	/**
+		2人のプレイヤーで対局を生成します
+		@param black 黒のプレイヤー
+		@param white 白のプレイヤー
+	*/
+	public Game(Player black, Player white)
+	{
+		this.black = black;
+		this.white = white;
+	}
+	/**
+		進行を受け取るリスナーを設定します
+		@param listener リスナー nullなら何も通知しません
+	*/
+	public void setListener(GameListener listener)
+	{
+		this.listener = listener;
+	}
+	/**
+		対局中のボードを返します
+		@return BitBoard ボード
+	*/
+	public BitBoard getBoard()
+	{
+		return board;
+	}
+	/**
+		初期配置から黒番で終局まで対局します<br>
+		何度でも呼べます
+		@return int 黒から見た石差
+	*/
+	public int play()
+	{
+		board.black = 0x0000000810000000L;
+		board.white = 0x0000001008000000L;
+		board.rehash();
+		return play(Rule.BLACK);
+	}
+	/**
+		指定した局面から終局まで対局します
+		@param start 始める局面
+		@param color 始める局面の手番の色
+		@return int 黒から見た石差
+	*/
+	public int play(BitBoard start, boolean color)
+	{
+		board.set(start);
+		return play(color);
+	}
+	/**
+		getBoard()のボードから終局まで対局します
+		@param color 手番の色
+		@return int 黒から見た石差
+	*/
+	private int play(boolean color)
+	{
+		while(!board.isFinished())
+		{
+			if(listener != null)listener.turnStarted(board, color);
+			Player player = color == Rule.BLACK ? black : white;
+			if(board.getMobility(color) == 0)
+			{
+				if(listener != null)listener.passed(board, color);
+				player.pass(board);
+				color = !color;
+				continue;
+			}
+			int pos;
+			long start = System.nanoTime();
+			while(true)
+			{
+				pos = player.selectPos(board);
+				if(board.putStone(color, pos))break;
+				if(listener != null)listener.illegalMove(board, color, pos);
+			}
+			long elapsed = System.nanoTime() - start;
+			if(listener != null)listener.moved(board, color, pos, elapsed);
+			(color == Rule.BLACK ? white : black).opponentMoved(board, pos);
+			color = !color;
+		}
+		black.finished(board);
+		white.finished(board);
+		if(listener != null)listener.finished(board);
+		return board.getStoneCount(Rule.BLACK) - board.getStoneCount(Rule.WHITE);
+	}
+	/**
+		ビット位置を棋譜の表記(A1～H8)にします
+		@param pos ビット位置
+		@return String 棋譜の表記
+	*/
+	public static String toNotation(int pos)
+	{
+		return String.format("%c%c", (char)((pos & 7) + 'A'), (char)((pos >> 3) + '1'));
+	}
+	/**
+		棋譜の表記(大文字小文字は問いません)をビット位置にします
+		@param s 棋譜の表記
+		@return int ビット位置 表記が正しくなければ-1
+	*/
+	public static int parseNotation(String s)
+	{
+		if(s.length() < 2)return -1;
+		int x = Character.toUpperCase(s.charAt(0)) - 'A';
+		int y = s.charAt(1) - '1';
+		if(0 <= x && x <= 7 && 0 <= y && y <= 7)return (y << 3) + x;
+		return -1;
+	}
+}
@@ -0,0 +1,52 @@
+package red.vivid.reversi;
+
+/**
+	Gameの進行を受け取ります<br>
+	表示や棋譜の記録はここで行い、Gameそのものは入出力をしません
+	@author vividorange
+*/
+public interface GameListener
+{
+	/**
+		手番が始まったときに呼ばれます パスする手番でも呼ばれます
+		@param board ボード
+		@param color 手番の色
+	*/
+	default void turnStarted(BitBoard board, boolean color)
+	{
+	}
+	/**
+		置ける場所がなくパスしたときに呼ばれます
+		@param board ボード
+		@param color パスした色
+	*/
+	default void passed(BitBoard board, boolean color)
+	{
+	}
+	/**
+		プレイヤーが置けない場所を選んだときに呼ばれます
+		@param board ボード
+		@param color 手番の色
+		@param pos 選んだセルのビット位置
+	*/
+	default void illegalMove(BitBoard board, boolean color, int pos)
+	{
+	}
+	/**
+		石を置いたときに呼ばれます
+		@param board 置いた後のボード
+		@param color 置いた色
+		@param pos 置いたセルのビット位置
+		@param elapsed 考えた時間(ナノ秒)
+	*/
+	default void moved(BitBoard board, boolean color, int pos, long elapsed)
+	{
+	}
+	/**
+		対局が終わったときに呼ばれます
+		@param board 終局したボード
+	*/
+	default void finished(BitBoard board)
+	{
+	}
+}
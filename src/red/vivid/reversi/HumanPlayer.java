@@ -0,0 +1,58 @@
+package red.vivid.reversi;
+import java.io.PrintStream;
+import java.util.Scanner;
+
+/**
+	コンソールから手を入力する人のプレイヤー
+	@author vividorange
+*/
+public class HumanPlayer implements Player
+{
+	/** 入力 */
+	private final Scanner scanner;
+	/** 案内を表示する先 */
+	private final PrintStream out;
+
+	/**
+		入出力を指定して人のプレイヤーを生成します
+		@param scanner 入力
+		@param out 案内を表示する先
+	*/
+	public HumanPlayer(Scanner scanner, PrintStream out)
+	{
+		this.scanner = scanner;
+		this.out = out;
+	}
+	/**
+		[A-Ha-h][1-8]の形式で入力されたセルを返します<br>
+		quitかexitと入力すると強制終了します<br>
+		不正入力には正常入力ができるまでループします
+		@param board 石を置きたいボード
+		@return int 入力されたセルのビット位置
+	*/
+	@Override
+	public int selectPos(BitBoard board)
+	{
+		while(true)
+		{
+			out.println("([A-H][1-8])で入力してください");
+			String value = scanner.next();
+			if(value.equals("exit") || value.equals("quit"))
+			{
+				System.exit(0);
+			}
+			int k = Game.parseNotation(value);
+			if(k >= 0)return k;
+		}
+	}
+	/**
+		passと入力されるまで待ちます
+		@param board パスするボード
+	*/
+	@Override
+	public void pass(BitBoard board)
+	{
+		out.println("passと入力してください");
+		while(!scanner.next().equals("pass"));
+	}
+}
@@ -0,0 +1,70 @@
+package red.vivid.reversi;
+
+/**
+	Kogge-Stoneの並列プレフィックスで8方向を分岐なしに計算する裏返し計算<br>
+	置いた場所から相手の石が続く範囲を3回のシフトで求め、その先に自分の石があるときだけ残します
+	@author vividorange
+*/
+class KoggeStoneFlip implements FlipEngine
+{
+	/** A列を除く */
+	private static final long NOT_A = 0xfefefefefefefefeL;
+	/** H列を除く */
+	private static final long NOT_H = 0x7f7f7f7f7f7f7f7fL;
+
+	@Override
+	public long flip(long my, long opp, long pos)
+	{
+		return left(my, opp, pos, 1, NOT_A)
+			| right(my, opp, pos, 1, NOT_H)
+			| left(my, opp, pos, 8, -1L)
+			| right(my, opp, pos, 8, -1L)
+			| left(my, opp, pos, 7, NOT_H)
+			| left(my, opp, pos, 9, NOT_A)
+			| right(my, opp, pos, 9, NOT_H)
+			| right(my, opp, pos, 7, NOT_A);
+	}
+	/**
+		上位ビットへ向かう1方向の裏返る石を返します
+		@param my 裏返す色
+		@param opp 裏返される色
+		@param pos 石を置く場所
+		@param d シフト量
+		@param mask シフトで回り込んだビットを消すマスク
+		@return long この方向で裏返る石
+	*/
+	private static long left(long my, long opp, long pos, int d, long mask)
+	{
+		long p = opp & mask;
+		long g = pos;
+		g |= p & (g << d);
+		p &= p << d;
+		g |= p & (g << (d << 1));
+		p &= p << (d << 1);
+		g |= p & (g << (d << 2));
+		long outflank = (g << d) & mask & my;
+		// outflankが0でなければすべて1、0なら0
+		return (g ^ pos) & -((outflank | -outflank) >>> 63);
+	}
+	/**
+		下位ビットへ向かう1方向の裏返る石を返します
+		@param my 裏返す色
+		@param opp 裏返される色
+		@param pos 石を置く場所
+		@param d シフト量
+		@param mask シフトで回り込んだビットを消すマスク
+		@return long この方向で裏返る石
+	*/
+	private static long right(long my, long opp, long pos, int d, long mask)
+	{
+		long p = opp & mask;
+		long g = pos;
+		g |= p & (g >>> d);
+		p &= p >>> d;
+		g |= p & (g >>> (d << 1));
+		p &= p >>> (d << 1);
+		g |= p & (g >>> (d << 2));
+		long outflank = (g >>> d) & mask & my;
+		return (g ^ pos) & -((outflank | -outflank) >>> 63);
+	}
+}
@@ -0,0 +1,126 @@
+package red.vivid.reversi;
+
+/**
+	置いた場所を通る4本のラインを8ビットに取り出して表を引く裏返し計算<br>
+	相手の石の並びから挟める場所を、挟める場所から裏返る石を表で求めます
+	@author vividorange
+*/
+class LineTableFlip implements FlipEngine
+{
+	/** ライン上の位置と相手の石(内側6ビット)から、挟むのに使える場所 */
+	private static final byte[] OUTFLANK = new byte[8 * 64];
+	/** ライン上の位置と挟む自分の石から、裏返る石 */
+	private static final byte[] FLIPPED = new byte[8 * 256];
+	/** ランクのビットを縦のラインに戻す表 */
+	private static final long[] COLUMN = new long[256];
+	/** マスを通る左上から右下への斜めのライン(a1-h8と平行 列とランクが一緒に増え、ビット位置は9ずつ変わる) */
+	private static final long[] DIAG9 = new long[64];
+	/** マスを通る右上から左下への斜めのライン(h1-a8と平行 列が減るとランクが増え、ビット位置は7ずつ変わる) */
+	private static final long[] DIAG7 = new long[64];
+
+	static
+	{
+		for(int x=0;x<8;++x)
+		{
+			for(int o=0;o<64;++o)
+			{
+				int opp = o << 1;
+				int out = 0;
+				int i = x + 1;
+				while(i < 8 && (opp >>> i & 1) != 0)++i;
+				if(i > x + 1 && i < 8)out |= 1 << i;
+				i = x - 1;
+				while(i >= 0 && (opp >>> i & 1) != 0)--i;
+				if(i < x - 1 && i >= 0)out |= 1 << i;
+				OUTFLANK[x * 64 + o] = (byte)out;
+			}
+			for(int out=0;out<256;++out)
+			{
+				int flipped = 0;
+				// xより上で一番近い挟む石までの間
+				int i = x + 1;
+				while(i < 8 && (out >>> i & 1) == 0)++i;
+				if(i < 8)flipped |= (1 << i) - (1 << (x + 1));
+				// xより下で一番近い挟む石までの間
+				i = x - 1;
+				while(i >= 0 && (out >>> i & 1) == 0)--i;
+				if(i >= 0)flipped |= (1 << x) - (1 << (i + 1));
+				FLIPPED[x * 256 + out] = (byte)flipped;
+			}
+		}
+		for(int b=0;b<256;++b)
+		{
+			long c = 0;
+			for(int r=0;r<8;++r)
+			{
+				if((b >>> r & 1) != 0)c |= 1L << (r << 3);
+			}
+			COLUMN[b] = c;
+		}
+		for(int k=0;k<64;++k)
+		{
+			int r = k >>> 3;
+			int f = k & 7;
+			for(int j=0;j<64;++j)
+			{
+				int rj = j >>> 3;
+				int fj = j & 7;
+				if(fj - rj == f - r)DIAG9[k] |= 1L << j;
+				if(fj + rj == f + r)DIAG7[k] |= 1L << j;
+			}
+		}
+	}
+
+	@Override
+	public long flip(long my, long opp, long pos)
+	{
+		int k = Long.numberOfTrailingZeros(pos);
+		int r = k >>> 3;
+		int f = k & 7;
+		int shift = r << 3;
+		long rev;
+
+		// 横
+		rev = (long)(line(f, (int)(my >>> shift) & 0xff, (int)(opp >>> shift) & 0xff)) << shift;
+		// 縦
+		rev |= COLUMN[line(r, column(my, f), column(opp, f))] << f;
+		// 斜め どちらのラインもランクごとに1マスなので、列の順に8ビットに集めて列fで引く
+		long m = DIAG9[k];
+		rev |= (line(f, diagonal(my, m), diagonal(opp, m)) * 0x0101010101010101L) & m;
+		m = DIAG7[k];
+		rev |= (line(f, diagonal(my, m), diagonal(opp, m)) * 0x0101010101010101L) & m;
+		return rev;
+	}
+	/**
+		1本のラインで裏返る石を返します
+		@param x ライン上の置いた場所
+		@param my 裏返す色の8ビット
+		@param opp 裏返される色の8ビット
+		@return int ライン上で裏返る石
+	*/
+	private static int line(int x, int my, int opp)
+	{
+		int out = OUTFLANK[(x << 6) | ((opp >>> 1) & 0x3f)] & my;
+		return FLIPPED[(x << 8) | out] & 0xff;
+	}
+	/**
+		f列をランクの順に8ビットに取り出します
+		@param b ボード
+		@param f 列
+		@return int 8ビットのライン
+	*/
+	private static int column(long b, int f)
+	{
+		return (int)((((b >>> f) & 0x0101010101010101L) * 0x0102040810204080L) >>> 56);
+	}
+	/**
+		斜めのラインを列の順に8ビットに取り出します
+		@param b ボード
+		@param mask ラインのマスク
+		@return int 8ビットのライン
+	*/
+	private static int diagonal(long b, long mask)
+	{
+		return (int)(((b & mask) * 0x0101010101010101L) >>> 56);
+	}
+}
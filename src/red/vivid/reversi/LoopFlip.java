@@ -0,0 +1,98 @@
+package red.vivid.reversi;
+
+/**
+	8方向にwhileで1マスずつ進める裏返し計算<br>
+	もとのBitBoard.getReverseBitの実装です
+	@author vividorange
+*/
+class LoopFlip implements FlipEngine
+{
+	@Override
+	public long flip(long my, long opp, long pos)
+	{
+		long rev = 0, tmp, mask;
+		
+        // 右
+        tmp=0;
+        mask = (pos >>> 1) & 0x7f7f7f7f7f7f7f7fL;
+        while(mask!=0 && (mask & opp)!=0)
+		{
+            tmp |= mask;
+            mask = (mask >>> 1) & 0x7f7f7f7f7f7f7f7fL;
+        }
+        if((mask & my)!=0) rev |= tmp;
+
+        // 左
+        tmp=0;
+        mask = (pos << 1) & 0xfefefefefefefefeL;
+        while(mask!=0 && (mask & opp)!=0)
+		{
+            tmp |= mask;
+            mask = (mask << 1) & 0xfefefefefefefefeL;
+        }
+        if((mask & my)!=0) rev |= tmp;
+
+        // 上
+        tmp=0;
+        mask = (pos << 8);
+        while(mask!=0 && (mask & opp)!=0)
+		{
+            tmp |= mask;
+            mask = (mask << 8);
+        }
+        if((mask & my)!=0) rev |= tmp;
+
+        // 下
+        tmp=0;
+        mask = (pos >>> 8);
+        while(mask!=0 && (mask & opp)!=0)
+		{
+            tmp |= mask;
+            mask = (mask >>> 8);
+        }
+        if((mask & my)!=0) rev |= tmp;
+
+        // 右上
+        tmp=0;
+        mask = (pos << 7) & 0x7f7f7f7f7f7f7f7fL;
+        while(mask!=0 && (mask & opp)!=0)
+		{
+            tmp |= mask;
+            mask = (mask << 7) & 0x7f7f7f7f7f7f7f7fL;
+        }
+        if((mask & my)!=0) rev |= tmp;
+
+        // 左上
+        tmp=0;
+        mask = (pos << 9) & 0xfefefefefefefefeL;
+        while(mask!=0 && (mask & opp)!=0)
+		{
+            tmp |= mask;
+            mask = (mask << 9) & 0xfefefefefefefefeL;
+        }
+        if((mask & my)!=0) rev |= tmp;
+
+        // 右下
+        tmp=0;
+        mask = (pos >>> 9) & 0x7f7f7f7f7f7f7f7fL;
+        while(mask!=0 && (mask & opp)!=0)
+		{
+            tmp |= mask;
+            mask = (mask >>> 9) & 0x7f7f7f7f7f7f7f7fL;
+        }
+        if((mask & my)!=0) rev |= tmp;
+
+        // 左下
+        tmp=0;
+        mask = (pos >>> 7) & 0xfefefefefefefefeL;
+        while(mask!=0 && (mask & opp)!=0)
+		{
+            tmp |= mask;
+            mask = (mask >>> 7) & 0xfefefefefefefefeL;
+        }
+        if((mask & my)!=0) rev |= tmp;
+
+
+        return rev;
+	}
+}
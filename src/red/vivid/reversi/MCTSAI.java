@@ -0,0 +1,576 @@
+package red.vivid.reversi;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+
+/**
+	リバーシAI
+	実装はモンテカルロ木探索(UCT)<br>
+	木はノードごとのオブジェクトではなく、プリミティブの配列(アリーナ)に並べて持ちます<br>
+	子は連続した領域に置き、親は最初の子の番号と子の数だけを覚えます<br>
+	複数のスレッドが1つの木を共有して読み(木並列)、降りるときに訪問回数を先に増やしておくこと(バーチャルロス)で、
+	同じ枝にスレッドが集まらないようにします<br>
+	次の手番では、自分の手と相手の手で進んだ先の部分木をそのまま新しいルートにして読み続けます<br>
+	使わなくなったノードはまとめてコピーせず、割り当てのついでに少しずつたどって空きリストに戻します
+	@author vividorange
+*/
+public class MCTSAI extends AI
+{
+	/** パスを表す手 */
+	private static final int PASS = 64;
+	/** まだ展開していないノード */
+	private static final int UNEXPANDED = -1;
+	/** 他のスレッドが展開しているノード */
+	private static final int EXPANDING = -2;
+	/** 終局したノード */
+	private static final int TERMINAL = -3;
+	/** 勝ちの得点 得点は引き分けを1とした整数で持つ */
+	private static final int WIN = 2;
+	/** 1スレッドがたどる最大の深さ */
+	private static final int MAX_PATH = 128;
+	/** 割り当てが足りないときに1度に回収するブロック数 */
+	private static final int COLLECT_BLOCKS = 16;
+
+	/** UCTの探索の重み */
+	private double exploration = 0.8;
+	/** マスの重みによる事前知識(progressive bias)の強さ 0なら使わない */
+	private double bias = 0.5;
+	/** アリーナのノード数 */
+	private int capacity = 1 << 21;
+
+	/** 最初の子の番号 未展開ならUNEXPANDED、展開中ならEXPANDING、終局ならTERMINAL */
+	private AtomicIntegerArray firstChild;
+	/** 子の数 */
+	private byte[] childCount;
+	/** このノードに入る手のビット位置(パスはPASS) */
+	private byte[] move;
+	/** 訪問回数 */
+	private AtomicIntegerArray visits;
+	/** このノードに入る手を打った側から見た得点の合計 */
+	private AtomicIntegerArray score;
+	/** 次に割り当てるノードの番号 */
+	private int used;
+	/** ルートの番号 */
+	private int root;
+	/** 使い回せる木があるか */
+	private boolean hasTree;
+	/** ルートの手番の石 */
+	private long rootMy;
+	/** ルートの相手の石 */
+	private long rootOpp;
+	/** 子の数ごとの空きブロックのリストの先頭 次のブロックは先頭ノードのfirstChildに入れる */
+	private final int[] freeHead = new int[PASS + 1];
+	/** まだたどっていない使わなくなったブロック (先頭の番号 << 32 | ノード数) */
+	private long[] garbage = new long[256];
+	/** garbageに積んだ数 */
+	private int garbageSize;
+	/** 直前の探索で前の木から引き継いだ訪問回数 */
+	private int reused;
+
+	/** ヘルパースレッド */
+	private ExecutorService helpers;
+	/** 探索を打ち切る時刻(System.nanoTime) */
+	private volatile long deadline;
+	/** 止めるか */
+	private volatile boolean stopped;
+	/** 直前の探索のプレイアウト数 */
+	private final LongAdder playouts = new LongAdder();
+	/** 直前の探索でたどった最大の深さ */
+	private final AtomicInteger maxDepth = new AtomicInteger();
+	/** 直前の探索の最善手の勝率 */
+	private double winRate;
+
+	/**
+		引数で指定した色のAIを生成します<br>
+		思考時間は1手1秒です
+		@param color AIの色
+	*/
+	public MCTSAI(boolean color)
+	{
+		super(color);
+	}
+	/**
+		引数で指定した色と思考時間のAIを生成します
+		@param color AIの色
+		@param timeLimit 1手あたりの思考時間(ミリ秒)
+	*/
+	public MCTSAI(boolean color, long timeLimit)
+	{
+		super(color, timeLimit);
+	}
+	/**
+		UCTの探索の重みを設定します
+		@param exploration 重み 大きいほど訪問の少ない手を試します
+	*/
+	public void setExploration(double exploration)
+	{
+		this.exploration = exploration;
+	}
+	/**
+		マスの重みによる事前知識の強さを設定します<br>
+		訪問回数が増えるにつれて効かなくなります
+		@param bias 強さ 0なら使いません
+	*/
+	public void setProgressiveBias(double bias)
+	{
+		this.bias = bias;
+	}
+	/**
+		木に置けるノード数を設定します<br>
+		1ノードあたり14バイト使います 次のselectで作り直されます
+		@param nodes ノード数
+	*/
+	public void setCapacity(int nodes)
+	{
+		this.capacity = Math.max(nodes, 256);
+		this.firstChild = null;
+	}
+	/**
+		ボードから石を置くのに最適と判断したセルをビット位置で返します<br>
+		思考時間の間プレイアウトを繰り返し、一番多く訪問した手を選びます
+		@param board 石を置きたいボード
+		@return int 最適と判断したセルのビット位置 置ける場所がなければ-1
+	*/
+	@Override
+	public int selectPos(BitBoard board)
+	{
+		long mobility = board.getMobility(this.color);
+		if(mobility == 0)return -1;
+		long my = this.color == Rule.BLACK ? board.black : board.white;
+		long opp = this.color == Rule.BLACK ? board.white : board.black;
+
+		if(firstChild == null)allocateArena();
+		if(!reuse(my, opp))clear();
+		rootMy = my;
+		rootOpp = opp;
+		// 時間がなくても手を返せるように、ルートは先に展開しておく
+		if(firstChild.get(root) == UNEXPANDED)expand(root, my, opp);
+		deadline = System.nanoTime() + getTimeLimit() * 1000000L;
+		stopped = false;
+		playouts.reset();
+		maxDepth.set(0);
+
+		int threads = getThreads();
+		Future<?>[] futures = new Future<?>[threads - 1];
+		if(threads > 1 && helpers == null)
+		{
+			helpers = Executors.newFixedThreadPool(threads - 1, r -> {
+				Thread t = new Thread(r, "MCTS-helper");
+				t.setDaemon(true);
+				return t;
+			});
+		}
+		for(int i=1;i<threads;++i)
+		{
+			futures[i - 1] = helpers.submit(() -> run(my, opp));
+		}
+		run(my, opp);
+		for(Future<?> f : futures)
+		{
+			try
+			{
+				f.get();
+			}
+			catch(InterruptedException | ExecutionException e)
+			{
+				throw new IllegalStateException(e);
+			}
+		}
+		return best();
+	}
+	/**
+		探索を途中で止めます<br>
+		selectPosは止めた時点で一番多く訪問した手を返します
+	*/
+	public void stop()
+	{
+		stopped = true;
+	}
+	@Override
+	public void shutdown()
+	{
+		super.shutdown();
+		if(helpers != null)
+		{
+			helpers.shutdownNow();
+			helpers = null;
+		}
+	}
+	/**
+		直前のselectで前の木から引き継いだ訪問回数を返します
+		@return int 訪問回数 引き継げなかったときは0
+	*/
+	public int getReusedVisits()
+	{
+		return reused;
+	}
+	/**
+		直前のselectでたどった最大の深さを返します
+		@return int 深さ
+	*/
+	@Override
+	public int getDepth()
+	{
+		return maxDepth.get();
+	}
+	/**
+		直前のselectのプレイアウト数を返します
+		@return long プレイアウト数
+	*/
+	@Override
+	public long getNodes()
+	{
+		return playouts.sum();
+	}
+	/**
+		直前のselectで選んだ手の勝率を-100～100にして返します
+		@return int 勝率を-100(全敗)～100(全勝)にした値
+	*/
+	@Override
+	public int getScore()
+	{
+		return (int)Math.round(winRate * 200 - 100);
+	}
+
+	/**
+		アリーナを確保します
+	*/
+	private void allocateArena()
+	{
+		firstChild = new AtomicIntegerArray(capacity);
+		childCount = new byte[capacity];
+		move = new byte[capacity];
+		visits = new AtomicIntegerArray(capacity);
+		score = new AtomicIntegerArray(capacity);
+		hasTree = false;
+	}
+	/**
+		木を空にしてルートだけにします
+	*/
+	private void clear()
+	{
+		used = 0;
+		java.util.Arrays.fill(freeHead, -1);
+		garbageSize = 0;
+		root = allocate(1);
+		init(root, PASS);
+		hasTree = true;
+		reused = 0;
+	}
+	/**
+		前のルートから自分の手と相手の手で進んだ局面を探して、その部分木を新しいルートにします<br>
+		それ以外のノードはgarbageに積むだけで、ここではたどりません
+		@param my 新しいルートの手番の石
+		@param opp 新しいルートの相手の石
+		@return boolean 引き継げたか
+	*/
+	private boolean reuse(long my, long opp)
+	{
+		if(!hasTree)return false;
+		int first = firstChild.get(root);
+		for(int c=first;c<first+childCount[root];++c)
+		{
+			long[] next = { rootMy, rootOpp };
+			play(next, move[c]);
+			long my1 = next[0];
+			long opp1 = next[1];
+			int grand = firstChild.get(c);
+			for(int g=grand;g<grand+childCount[c];++g)
+			{
+				next[0] = my1;
+				next[1] = opp1;
+				play(next, move[g]);
+				if(next[0] != my || next[1] != opp)continue;
+
+				int newRoot = allocate(1);
+				if(newRoot < 0)return false;
+				move[newRoot] = move[g];
+				childCount[newRoot] = childCount[g];
+				visits.set(newRoot, visits.get(g));
+				score.set(newRoot, score.get(g));
+				firstChild.set(newRoot, firstChild.get(g));
+				// 子は新しいルートに移ったので、古いノードからはたどらないようにする
+				firstChild.set(g, UNEXPANDED);
+				pushGarbage(root, 1);
+				root = newRoot;
+				reused = visits.get(newRoot);
+				return true;
+			}
+		}
+		return false;
+	}
+	/**
+		局面に1手打って手番を入れ替えます(reuse用)
+		@param board 手番の石と相手の石
+		@param pos 打つ手(パスはPASS)
+	*/
+	private static void play(long[] board, int pos)
+	{
+		long my = board[0];
+		long opp = board[1];
+		if(pos != PASS)
+		{
+			long p = 1L << pos;
+			long rev = BitBoard.getReverseBit(my, opp, p);
+			my ^= p | rev;
+			opp ^= rev;
+		}
+		board[0] = opp;
+		board[1] = my;
+	}
+	/**
+		連続したノードを割り当てます<br>
+		同じ大きさの空きブロック、未使用の領域の順に探し、なければ使わなくなったブロックを少しずつ回収します
+		@param n ノード数
+		@return int 最初のノードの番号 足りなければ-1
+	*/
+	private synchronized int allocate(int n)
+	{
+		while(true)
+		{
+			int free = freeHead[n];
+			if(free >= 0)
+			{
+				freeHead[n] = firstChild.get(free);
+				return free;
+			}
+			if(used + n <= capacity)
+			{
+				int first = used;
+				used += n;
+				return first;
+			}
+			if(garbageSize == 0)return -1;
+			collect(COLLECT_BLOCKS);
+		}
+	}
+	/**
+		使わなくなったブロックを積みます
+		@param first 先頭の番号
+		@param n ノード数
+	*/
+	private void pushGarbage(int first, int n)
+	{
+		if(garbageSize == garbage.length)garbage = java.util.Arrays.copyOf(garbage, garbageSize * 2);
+		garbage[garbageSize++] = (long)first << 32 | n;
+	}
+	/**
+		使わなくなったブロックをいくつかたどって、子のブロックを積み、自分は空きリストに戻します
+		@param blocks 回収するブロック数の上限
+	*/
+	private void collect(int blocks)
+	{
+		for(;blocks>0 && garbageSize>0;--blocks)
+		{
+			long g = garbage[--garbageSize];
+			int first = (int)(g >>> 32);
+			int n = (int)g;
+			for(int i=first;i<first+n;++i)
+			{
+				int child = firstChild.get(i);
+				if(child >= 0)pushGarbage(child, childCount[i]);
+			}
+			firstChild.set(first, freeHead[n]);
+			freeHead[n] = first;
+		}
+	}
+	/**
+		ノードを初期化します
+		@param node ノードの番号
+		@param pos このノードに入る手
+	*/
+	private void init(int node, int pos)
+	{
+		move[node] = (byte)pos;
+		childCount[node] = 0;
+		visits.set(node, 0);
+		score.set(node, 0);
+		firstChild.set(node, UNEXPANDED);
+	}
+	/**
+		時間切れになるまでプレイアウトを繰り返します
+		@param rootMy ルートの手番の石
+		@param rootOpp ルートの相手の石
+	*/
+	private void run(long rootMy, long rootOpp)
+	{
+		Playout playout = Playout.current();
+		int[] path = new int[MAX_PATH];
+		long count = 0;
+		while(!stopped && System.nanoTime() - deadline < 0)
+		{
+			simulate(rootMy, rootOpp, playout, path);
+			++count;
+		}
+		playouts.add(count);
+	}
+	/**
+		ルートから葉まで降りて、プレイアウトの結果を逆伝播します
+		@param my ルートの手番の石
+		@param opp ルートの相手の石
+		@param playout このスレッドのプレイアウト
+		@param path たどったノードを入れるバッファ
+	*/
+	private void simulate(long my, long opp, Playout playout, int[] path)
+	{
+		int node = root;
+		int len = 0;
+		visits.incrementAndGet(node);
+		path[len++] = node;
+		boolean terminal = false;
+		while(len < MAX_PATH)
+		{
+			int first = firstChild.get(node);
+			boolean expanded = false;
+			if(first == UNEXPANDED)
+			{
+				first = expand(node, my, opp);
+				if(first < 0)
+				{
+					terminal = first == TERMINAL;
+					break;
+				}
+				expanded = true;
+			}
+			else if(first == TERMINAL)
+			{
+				terminal = true;
+				break;
+			}
+			else if(first == EXPANDING)
+			{
+				break;
+			}
+			int child = select(node, first, childCount[node]);
+			int pos = move[child];
+			if(pos != PASS)
+			{
+				long p = 1L << pos;
+				long rev = BitBoard.getReverseBit(my, opp, p);
+				my ^= p | rev;
+				opp ^= rev;
+			}
+			long t = my;
+			my = opp;
+			opp = t;
+			// 先に訪問回数を増やしておくと、得点が入るまでは負けとして数えられる(バーチャルロス)
+			visits.incrementAndGet(child);
+			path[len++] = child;
+			node = child;
+			// 展開したノードからは1つ降りてプレイアウトする
+			if(expanded)break;
+		}
+
+		int diff = terminal ? Long.bitCount(my) - Long.bitCount(opp) : playout.play(my, opp);
+		// 葉に入る手を打った側から見た得点
+		int r = diff < 0 ? WIN : diff == 0 ? WIN / 2 : 0;
+		for(int i=len-1;i>=0;--i)
+		{
+			score.addAndGet(path[i], r);
+			r = WIN - r;
+		}
+		if(len > maxDepth.get())maxDepth.accumulateAndGet(len, Math::max);
+	}
+	/**
+		ノードを展開して子を作ります
+		@param node ノードの番号
+		@param my 手番の石
+		@param opp 相手の石
+		@return int 最初の子の番号 終局ならTERMINAL、他のスレッドが展開中か木がいっぱいならEXPANDING
+	*/
+	private int expand(int node, long my, long opp)
+	{
+		if(!firstChild.compareAndSet(node, UNEXPANDED, EXPANDING))return EXPANDING;
+		long mobility = BitBoard.getReversiblePos(my, opp);
+		int n = Long.bitCount(mobility);
+		if(n == 0)
+		{
+			if(BitBoard.getReversiblePos(opp, my) == 0)
+			{
+				firstChild.set(node, TERMINAL);
+				return TERMINAL;
+			}
+			n = 1;
+		}
+		int first = allocate(n);
+		if(first < 0)
+		{
+			// 木がいっぱいなので、このノードは葉のままにする
+			firstChild.set(node, UNEXPANDED);
+			return EXPANDING;
+		}
+		if(mobility == 0)
+		{
+			init(first, PASS);
+		}
+		else
+		{
+			int i = first;
+			for(long m = mobility; m != 0; m &= m - 1)
+			{
+				init(i++, Long.numberOfTrailingZeros(m));
+			}
+		}
+		childCount[node] = (byte)n;
+		firstChild.set(node, first);
+		return first;
+	}
+	/**
+		UCTで子を選びます
+		@param node 親の番号
+		@param first 最初の子の番号
+		@param n 子の数
+		@return int 選んだ子の番号
+	*/
+	private int select(int node, int first, int n)
+	{
+		double logN = Math.log(Math.max(1, visits.get(node)));
+		int best = first;
+		double bestValue = Double.NEGATIVE_INFINITY;
+		for(int c=first;c<first+n;++c)
+		{
+			int v = visits.get(c);
+			int pos = move[c];
+			double prior = pos == PASS ? 0 : bias * Search.WEIGHT[pos] / 100.0;
+			double value;
+			if(v == 0)
+			{
+				// 訪問していない手を先に試す 事前知識が高い手から
+				value = 1e9 + prior;
+			}
+			else
+			{
+				value = score.get(c) / (double)(WIN * v)
+					+ exploration * Math.sqrt(logN / v)
+					+ prior / (v + 1);
+			}
+			if(value > bestValue)
+			{
+				bestValue = value;
+				best = c;
+			}
+		}
+		return best;
+	}
+	/**
+		ルートの子で一番多く訪問した手を返します
+		@return int 手のビット位置
+	*/
+	private int best()
+	{
+		int first = firstChild.get(root);
+		int n = childCount[root];
+		int best = -1;
+		int bestVisits = -1;
+		for(int c=first;c<first+n;++c)
+		{
+			int v = visits.get(c);
+			if(v > bestVisits)
+			{
+				bestVisits = v;
+				best = c;
+			}
+		}
+		winRate = bestVisits > 0 ? score.get(best) / (double)(WIN * bestVisits) : 0.5;
+		return move[best];
+	}
+}
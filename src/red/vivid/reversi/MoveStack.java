@@ -0,0 +1,56 @@
+package red.vivid.reversi;
+
+/**
+	BitBoard.doMoveで打った手を覚えておき、undoMoveで戻すためのスタック<br>
+	配列は最初に確保するので、探索中にオブジェクトを作りません<br>
+	スレッドごとに1つ用意して使います
+	@author vividorange
+*/
+public class MoveStack
+{
+	/** 石を置いた場所 */
+	final long[] pos;
+	/** 裏返した石 */
+	final long[] rev;
+	/** 打った色 */
+	final boolean[] color;
+	/** 打つ前の局面のハッシュ値 */
+	final long[] hash;
+	/** 積んでいる手の数 */
+	int ply;
+
+	/**
+		1ゲーム分の手が積めるスタックを生成します
+	*/
+	public MoveStack()
+	{
+		this(64);
+	}
+	/**
+		積める手の数を指定してスタックを生成します
+		@param capacity 積める手の数
+	*/
+	public MoveStack(int capacity)
+	{
+		pos = new long[capacity];
+		rev = new long[capacity];
+		color = new boolean[capacity];
+		hash = new long[capacity];
+	}
+	/**
+		積んでいる手の数を返します
+		@return int 手の数
+	*/
+	public int size()
+	{
+		return ply;
+	}
+	/**
+		スタックを空にします<br>
+		ボードは戻さないので、ボードを入れ替えるときに使います
+	*/
+	public void clear()
+	{
+		ply = 0;
+	}
+}
@@ -0,0 +1,225 @@
+package red.vivid.reversi;
+
+/**
+	評価関数で使うパターン(辺、隅、斜め、縦横の列)の定義<br>
+	1つのパターンはいくつかのマスの並びで、空き=0、黒=1、白=2の3進数でインデックスにします<br>
+	左上の隅や上の辺で定義した形を8通りに対称変換したものをすべて使い、同じ種類のパターンは同じ重みを共有します<br>
+	マスごとに含まれるパターンと桁の重みを持っているので、石を置いたときは置いたマスと返ったマスのインデックスだけを足し引きします
+	@author vividorange
+*/
+public final class Pattern
+{
+	/** 種類ごとの形 左上の隅や上の辺に置いたときのマス */
+	private static final int[][] SHAPES =
+	{
+		// 2列目
+		{  8,  9, 10, 11, 12, 13, 14, 15 },
+		// 3列目
+		{ 16, 17, 18, 19, 20, 21, 22, 23 },
+		// 4列目
+		{ 24, 25, 26, 27, 28, 29, 30, 31 },
+		// 斜め8マス
+		{  0,  9, 18, 27, 36, 45, 54, 63 },
+		// 斜め7マス
+		{  1, 10, 19, 28, 37, 46, 55 },
+		// 斜め6マス
+		{  2, 11, 20, 29, 38, 47 },
+		// 斜め5マス
+		{  3, 12, 21, 30, 39 },
+		// 斜め4マス
+		{  4, 13, 22, 31 },
+		// 辺とXの2マス
+		{  0,  1,  2,  3,  4,  5,  6,  7,  9, 14 },
+		// 隅の3x3
+		{  0,  1,  2,  8,  9, 10, 16, 17, 18 },
+		// 隅の2x5
+		{  0,  1,  2,  3,  4,  8,  9, 10, 11, 12 },
+	};
+
+	/** パターンの種類の数 */
+	public static final int TYPES = SHAPES.length;
+	/** 種類ごとのインデックスの数(3のマス数乗) */
+	static final int[] TYPE_SIZE = new int[TYPES];
+	/** 種類ごとの重みの先頭 */
+	static final int[] TYPE_OFFSET = new int[TYPES];
+	/** 1つの段階のパターンの重みの数 */
+	public static final int SIZE;
+	/** 盤面にあるパターンの数 */
+	public static final int COUNT;
+	/** パターンごとの種類 */
+	static final int[] TYPE_OF;
+	/** パターンごとの重みの先頭 TYPE_OFFSET[TYPE_OF[i]]と同じです */
+	static final int[] OFFSET_OF;
+	/** パターンごとのマス インデックスのj桁目がj番目のマスです */
+	static final int[][] SQUARES;
+	/** マスごとに、そのマスを含むパターン */
+	private static final int[][] INSTANCES_AT = new int[64][];
+	/** マスごとに、INSTANCES_ATのパターンでの桁の重み(3のj乗) */
+	private static final int[][] COEFFICIENT_AT = new int[64][];
+
+	static
+	{
+		int size = 0;
+		int[] typeOf = new int[TYPES * BitBoard.SYMMETRIES];
+		int[][] squares = new int[TYPES * BitBoard.SYMMETRIES][];
+		int count = 0;
+		for(int type=0;type<TYPES;++type)
+		{
+			int[] shape = SHAPES[type];
+			TYPE_SIZE[type] = pow3(shape.length);
+			TYPE_OFFSET[type] = size;
+			size += TYPE_SIZE[type];
+			// 対称変換して、同じマスの組になるものは1つにまとめる
+			long[] seen = new long[BitBoard.SYMMETRIES];
+			int n = 0;
+			next:
+			for(int t=0;t<BitBoard.SYMMETRIES;++t)
+			{
+				int[] s = new int[shape.length];
+				long mask = 0;
+				for(int j=0;j<shape.length;++j)
+				{
+					s[j] = BitBoard.transformPos(shape[j], t);
+					mask |= 1L << s[j];
+				}
+				for(int i=0;i<n;++i)
+				{
+					if(seen[i] == mask)continue next;
+				}
+				seen[n++] = mask;
+				typeOf[count] = type;
+				squares[count] = s;
+				++count;
+			}
+		}
+		SIZE = size;
+		COUNT = count;
+		TYPE_OF = java.util.Arrays.copyOf(typeOf, count);
+		SQUARES = java.util.Arrays.copyOf(squares, count);
+		OFFSET_OF = new int[count];
+		for(int i=0;i<count;++i)
+		{
+			OFFSET_OF[i] = TYPE_OFFSET[TYPE_OF[i]];
+		}
+
+		int[] n = new int[64];
+		for(int[] s : SQUARES)
+		{
+			for(int k : s)++n[k];
+		}
+		for(int k=0;k<64;++k)
+		{
+			INSTANCES_AT[k] = new int[n[k]];
+			COEFFICIENT_AT[k] = new int[n[k]];
+			n[k] = 0;
+		}
+		for(int i=0;i<count;++i)
+		{
+			int c = 1;
+			for(int k : SQUARES[i])
+			{
+				INSTANCES_AT[k][n[k]] = i;
+				COEFFICIENT_AT[k][n[k]] = c;
+				++n[k];
+				c *= 3;
+			}
+		}
+	}
+
+	private Pattern()
+	{
+	}
+	/**
+		3のn乗を返します
+		@param n 指数
+		@return int 3のn乗
+	*/
+	private static int pow3(int n)
+	{
+		int p = 1;
+		for(int i=0;i<n;++i)p *= 3;
+		return p;
+	}
+	/**
+		マスを含むパターンの数を返します
+		@param k マスのビット位置
+		@return int パターンの数
+	*/
+	static int coverage(int k)
+	{
+		return INSTANCES_AT[k].length;
+	}
+	/**
+		すべてのパターンのインデックスを計算します
+		@param black 黒い石
+		@param white 白い石
+		@param indices インデックスを書き込む配列 長さはCOUNT以上
+	*/
+	public static void indices(long black, long white, int[] indices)
+	{
+		for(int i=0;i<COUNT;++i)
+		{
+			int[] s = SQUARES[i];
+			int v = 0;
+			for(int j=s.length-1;j>=0;--j)
+			{
+				v = v * 3 + (int)(black >>> s[j] & 1) + 2 * (int)(white >>> s[j] & 1);
+			}
+			indices[i] = v;
+		}
+	}
+	/**
+		石を置いて裏返したときにインデックスを更新します
+		@param indices インデックス
+		@param color 置いた色
+		@param pos 置いた場所
+		@param rev 返った石
+	*/
+	static void apply(int[] indices, boolean color, long pos, long rev)
+	{
+		update(indices, color, pos, rev, 1);
+	}
+	/**
+		applyで更新したインデックスを元に戻します
+		@param indices インデックス
+		@param color 置いた色
+		@param pos 置いた場所
+		@param rev 返った石
+	*/
+	static void revert(int[] indices, boolean color, long pos, long rev)
+	{
+		update(indices, color, pos, rev, -1);
+	}
+	/**
+		置いたマスと返ったマスを含むパターンだけインデックスを足し引きします
+		@param indices インデックス
+		@param color 置いた色
+		@param pos 置いた場所
+		@param rev 返った石
+		@param sign 置くなら1、戻すなら-1
+	*/
+	private static void update(int[] indices, boolean color, long pos, long rev, int sign)
+	{
+		// 空き(0)から置いた色(黒1、白2)へ
+		int placed = color == Rule.BLACK ? sign : 2 * sign;
+		int k = Long.numberOfTrailingZeros(pos);
+		int[] instances = INSTANCES_AT[k];
+		int[] coefficient = COEFFICIENT_AT[k];
+		for(int i=0;i<instances.length;++i)
+		{
+			indices[instances[i]] += coefficient[i] * placed;
+		}
+		// 白(2)から黒(1)へは-1、黒から白へは+1
+		int flip = color == Rule.BLACK ? -sign : sign;
+		for(long m = rev; m != 0; m &= m - 1)
+		{
+			k = Long.numberOfTrailingZeros(m);
+			instances = INSTANCES_AT[k];
+			coefficient = COEFFICIENT_AT[k];
+			for(int i=0;i<instances.length;++i)
+			{
+				indices[instances[i]] += coefficient[i] * flip;
+			}
+		}
+	}
+}
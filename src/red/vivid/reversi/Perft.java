@@ -0,0 +1,231 @@
+package red.vivid.reversi;
+
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+	指定した手数先までの局面の数を数えます(perft)<br>
+	合法手の生成と石を裏返す処理が正しいかの確認と、その速さの計測に使います<br>
+	パスはReversi.gameと同じく1手と数え、途中で終局した局面はそこで1つと数えます(公開されている値と同じ数え方)<br>
+	浅いところの手をForkJoinPoolのタスクに分けて並列に数えます
+	@author vividorange
+*/
+public class Perft
+{
+	/**
+		初期配置から数えた、手数ごとの局面の数<br>
+		0番目は初期配置そのものです
+	*/
+	public static final long[] KNOWN =
+	{
+		1L, 4L, 12L, 56L, 244L, 1396L, 8200L, 55092L, 390216L, 3005288L,
+		24571284L, 212258800L, 1939886636L, 18429641748L, 184042084512L,
+	};
+
+	/** 残りの深さがこれ以上ならタスクに分ける */
+	private static final int SPLIT_DEPTH = 6;
+	/** 残りの深さがこれ以上の局面を表に書き込む */
+	private static final int HASH_DEPTH = 3;
+
+	/** 探索に使うスレッド数 */
+	private int threads = Runtime.getRuntime().availableProcessors();
+	/** 局面の数を覚える表のサイズ(MB) 0なら使わない */
+	private int hashSize;
+	/** 局面の数を覚える表 1エントリはキーと数のXOR、数の2つのlongです */
+	private long[] table;
+	/** 表のエントリ番号のマスク */
+	private long mask;
+	/** 数えたノード数 */
+	private final LongAdder nodeCount = new LongAdder();
+
+	/** 直前のcountで訪れたノード数 */
+	private long nodes;
+	/** 直前のcountにかかった時間(ナノ秒) */
+	private long elapsed;
+
+	/**
+		スレッド数を設定します
+		@param threads スレッド数
+	*/
+	public void setThreads(int threads)
+	{
+		this.threads = Math.max(1, threads);
+	}
+	/**
+		局面の数を覚える表のサイズを設定します<br>
+		0以外にすると、同じ局面に合流したときに数え直さずに済みます
+		@param megabytes サイズ(MB) 2の冪に切り下げます 0なら使いません
+	*/
+	public void setHashSize(int megabytes)
+	{
+		this.hashSize = Math.max(0, megabytes);
+	}
+	/**
+		局面の数を数えます
+		@param board 数え始めるボード
+		@param color 手番の色
+		@param depth 手数
+		@return long depth手後の局面の数
+	*/
+	public long count(BitBoard board, boolean color, int depth)
+	{
+		long start = System.nanoTime();
+		nodeCount.reset();
+		table = null;
+		if(hashSize > 0)
+		{
+			long entries = Long.highestOneBit(hashSize * (1L << 20) / 16);
+			entries = Math.min(entries, 1L << 29);
+			table = new long[(int)(entries * 2)];
+			mask = entries - 1;
+		}
+		ForkJoinPool pool = new ForkJoinPool(threads);
+		long n;
+		try
+		{
+			n = pool.invoke(new Task(board.copy(), color, depth));
+		}
+		finally
+		{
+			pool.shutdown();
+		}
+		nodes = nodeCount.sum();
+		elapsed = System.nanoTime() - start;
+		table = null;
+		return n;
+	}
+	/**
+		直前のcountで訪れたノード数を返します
+		@return long ノード数
+	*/
+	public long getNodes()
+	{
+		return nodes;
+	}
+	/**
+		直前のcountにかかった時間を返します
+		@return long 時間(ナノ秒)
+	*/
+	public long getElapsed()
+	{
+		return elapsed;
+	}
+	/**
+		直前のcountの1秒あたりのノード数を返します
+		@return long ノード数/秒
+	*/
+	public long getNodesPerSecond()
+	{
+		return elapsed > 0 ? nodes * 1000000000L / elapsed : 0;
+	}
+	/**
+		初期配置から数えた結果が既知の値と一致するかを返します
+		@param depth 手数
+		@param count 数えた局面の数
+		@return boolean 一致すればtrue 既知の値がなければfalse
+	*/
+	public static boolean check(int depth, long count)
+	{
+		return 0 <= depth && depth < KNOWN.length && KNOWN[depth] == count;
+	}
+
+	/**
+		1つの局面から数えるタスク
+	*/
+	private final class Task extends RecursiveTask<Long>
+	{
+		private static final long serialVersionUID = 1L;
+
+		private final BitBoard board;
+		private final boolean color;
+		private final int depth;
+		/** 打った手のスタック */
+		private MoveStack stack;
+
+		Task(BitBoard board, boolean color, int depth)
+		{
+			this.board = board;
+			this.color = color;
+			this.depth = depth;
+		}
+		@Override
+		protected Long compute()
+		{
+			if(depth < SPLIT_DEPTH)
+			{
+				stack = new MoveStack(depth + 1);
+				return perft(color, depth, false);
+			}
+			nodeCount.increment();
+			long mobility = board.getMobility(color);
+			if(mobility == 0)
+			{
+				if(board.getMobility(!color) == 0)return 1L;
+				return new Task(board, !color, depth - 1).compute();
+			}
+			Task[] children = new Task[Long.bitCount(mobility)];
+			int i = 0;
+			for(long m = mobility; m != 0; m &= m - 1)
+			{
+				long pos = m & -m;
+				BitBoard next = board.copy();
+				next.reverse(color, pos, board.toRev(color, pos));
+				children[i++] = new Task(next, !color, depth - 1);
+			}
+			invokeAll(children);
+			long n = 0;
+			for(Task t : children)
+			{
+				n += t.join();
+			}
+			return n;
+		}
+		/**
+			直列に数えます
+			@param color 手番の色
+			@param depth 残りの手数
+			@param passed 直前の手がパスか
+			@return long 局面の数
+		*/
+		private long perft(boolean color, int depth, boolean passed)
+		{
+			if(depth == 0)return 1;
+			nodeCount.increment();
+			long mobility = board.getMobility(color);
+			if(depth == 1)
+			{
+				// パスも終局も1つと数える
+				return mobility != 0 ? Long.bitCount(mobility) : 1;
+			}
+			if(mobility == 0)
+			{
+				// 終局
+				if(passed)return 1;
+				return perft(!color, depth - 1, true);
+			}
+			long key = 0;
+			if(table != null && depth >= HASH_DEPTH)
+			{
+				key = board.getHash(color) ^ depth * 0x9e3779b97f4a7c15L;
+				int i = (int)(key & mask) << 1;
+				long n = table[i + 1];
+				if((table[i] ^ n) == key)return n;
+			}
+			long n = 0;
+			for(long m = mobility; m != 0; m &= m - 1)
+			{
+				long pos = m & -m;
+				board.doMove(stack, color, pos, board.toRev(color, pos));
+				n += perft(!color, depth - 1, false);
+				board.undoMove(stack);
+			}
+			if(key != 0)
+			{
+				int i = (int)(key & mask) << 1;
+				table[i] = key ^ n;
+				table[i + 1] = n;
+			}
+			return n;
+		}
+	}
+}
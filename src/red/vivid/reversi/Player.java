@@ -0,0 +1,39 @@
+package red.vivid.reversi;
+
+/**
+	Gameで石を置くプレイヤー<br>
+	AI、RandomAI、HumanPlayer、RemotePlayerが実装しています
+	@author vividorange
+*/
+public interface Player
+{
+	/**
+		石を置くセルをビット位置で返します<br>
+		置ける場所があるときだけ呼ばれます
+		@param board 石を置きたいボード
+		@return int 石を置くセルのビット位置 置けない場所を返すともう一度呼ばれます
+	*/
+	int selectPos(BitBoard board);
+	/**
+		置ける場所がなくパスするときに呼ばれます
+		@param board パスするボード
+	*/
+	default void pass(BitBoard board)
+	{
+	}
+	/**
+		相手が石を置いたときに呼ばれます
+		@param board 相手が置いた後のボード
+		@param pos 相手が置いたセルのビット位置
+	*/
+	default void opponentMoved(BitBoard board, int pos)
+	{
+	}
+	/**
+		対局が終わったときに呼ばれます
+		@param board 終局したボード
+	*/
+	default void finished(BitBoard board)
+	{
+	}
+}
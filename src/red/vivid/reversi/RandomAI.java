@@ -4,7 +4,7 @@ import java.util.*;
 
 /**
 	リバーシAI
-	実装はランダム
+	実装はランダム 乱数はスレッドごとのPlayoutのものを使います
 	@author vividorange
 */
 public class RandomAI extends AI
@@ -14,16 +14,14 @@ public class RandomAI extends AI
 		super(color);
 	}
 	/**
-		ボードから石を置くのに最適と判断したセルを返します
+		ボードから石を置くのに最適と判断したセルをビット位置で返します
 		@param board 石を置きたいボード
-		@return Point 最適と判断したセル
+		@return int 最適と判断したセルのビット位置 置ける場所がなければ-1
 	*/
-	public Point select(BitBoard board)
+	public int selectPos(BitBoard board)
 	{
-		int length = board.getReversibleCount(this.color);
-		Point[] cells = board.getReversibleCells(this.color);
-		int rnd = (int)(Math.random() * length);
-		Point cell = cells[rnd];
-		return cell;
+		long mobility = board.getMobility(this.color);
+		if(mobility == 0)return -1;
+		return Playout.current().randomMove(mobility);
 	}
 }
@@ -0,0 +1,56 @@
+package red.vivid.reversi;
+import java.io.*;
+
+/**
+	ネットワークなどの向こうにいるプレイヤー<br>
+	1行に1手をA1～H8の表記で送り合います パスは送りません(どちらの側でも分かるため)
+	@author vividorange
+*/
+public class RemotePlayer implements Player
+{
+	/** 相手からの手 */
+	private final BufferedReader in;
+	/** 相手への手 */
+	private final PrintWriter out;
+
+	/**
+		入出力を指定してリモートのプレイヤーを生成します
+		@param in 相手からの手を読む
+		@param out こちらの手を書く
+	*/
+	public RemotePlayer(Reader in, Writer out)
+	{
+		this.in = in instanceof BufferedReader ? (BufferedReader)in : new BufferedReader(in);
+		this.out = new PrintWriter(out, true);
+	}
+	/**
+		相手が送ってきた手を返します
+		@param board 石を置きたいボード
+		@return int 相手が選んだセルのビット位置
+		@throws UncheckedIOException 読めなかったか、接続が切れたとき
+	*/
+	@Override
+	public int selectPos(BitBoard board)
+	{
+		try
+		{
+			String line = in.readLine();
+			if(line == null)throw new EOFException("相手との接続が切れました");
+			return Game.parseNotation(line.trim());
+		}
+		catch(IOException e)
+		{
+			throw new UncheckedIOException(e);
+		}
+	}
+	/**
+		こちらの手を相手に送ります
+		@param board こちらが置いた後のボード
+		@param pos こちらが置いたセルのビット位置
+	*/
+	@Override
+	public void opponentMoved(BitBoard board, int pos)
+	{
+		out.println(Game.toNotation(pos));
+	}
+}
@@ -0,0 +1,135 @@
+package red.vivid.reversi;
+
+import java.io.*;
+
+/**
+	評価関数の学習に使う1つの局面<br>
+	石差と評価値はどちらも黒から見た値です<br>
+	サンプルのファイルはヘッダー(MAGIC, VERSION)の後にBYTESバイトのレコードが並びます<br>
+	<pre>
+	long  黒い石
+	long  白い石
+	byte  手番(0なら黒、1なら白)
+	byte  終局したときの石差
+	short 探索の評価値(石差の100倍) なければNO_SCORE
+	</pre>
+	@author vividorange
+*/
+public final class Sample
+{
+	/** サンプルのファイルの先頭 "RVSP" */
+	public static final int MAGIC = 0x52565350;
+	/** サンプルのファイルの形式の版 */
+	public static final int VERSION = 1;
+	/** 1つのレコードのバイト数 */
+	public static final int BYTES = 20;
+	/** 探索の評価値がないことを表す値 */
+	public static final int NO_SCORE = Short.MIN_VALUE;
+
+	/** 黒い石 */
+	public long black;
+	/** 白い石 */
+	public long white;
+	/** 手番の色 */
+	public boolean color;
+	/** 終局したときの黒から見た石差 */
+	public int result;
+	/** 探索の黒から見た評価値 なければNO_SCORE */
+	public int score = NO_SCORE;
+
+	/**
+		空のサンプルを生成します
+	*/
+	public Sample()
+	{
+	}
+	/**
+		局面と結果を指定してサンプルを生成します
+		@param board ボード
+		@param color 手番の色
+		@param result 終局したときの黒から見た石差
+		@param score 探索の黒から見た評価値 なければNO_SCORE
+	*/
+	public Sample(BitBoard board, boolean color, int result, int score)
+	{
+		this.black = board.black;
+		this.white = board.white;
+		this.color = color;
+		this.result = result;
+		this.score = score;
+	}
+	/**
+		ファイルのヘッダーを書き出します
+		@param out 出力
+		@throws IOException 書き出せないとき
+	*/
+	public static void writeHeader(DataOutput out) throws IOException
+	{
+		out.writeInt(MAGIC);
+		out.writeInt(VERSION);
+	}
+	/**
+		ファイルのヘッダーを読んで確かめます
+		@param in 入力
+		@throws IOException 読めないか、形式が違うとき
+	*/
+	public static void readHeader(DataInput in) throws IOException
+	{
+		if(in.readInt() != MAGIC)throw new IOException("サンプルのファイルではありません");
+		int version = in.readInt();
+		if(version != VERSION)throw new IOException("知らない版です " + version);
+	}
+	/**
+		レコードを書き出します
+		@param out 出力
+		@throws IOException 書き出せないとき
+	*/
+	public void write(DataOutput out) throws IOException
+	{
+		out.writeLong(black);
+		out.writeLong(white);
+		out.writeByte(color == Rule.BLACK ? 0 : 1);
+		out.writeByte(result);
+		out.writeShort(score);
+	}
+	/**
+		レコードをバッファに書き込みます writeと同じバイト列になります
+		@param buffer ビッグエンディアンのバッファ
+	*/
+	public void write(java.nio.ByteBuffer buffer)
+	{
+		buffer.putLong(black);
+		buffer.putLong(white);
+		buffer.put((byte)(color == Rule.BLACK ? 0 : 1));
+		buffer.put((byte)result);
+		buffer.putShort((short)score);
+	}
+	/**
+		レコードを読み込みます
+		@param in 入力
+		@throws IOException 読めないとき 途中で終わったときはEOFException
+	*/
+	public void read(DataInput in) throws IOException
+	{
+		black = in.readLong();
+		white = in.readLong();
+		color = in.readByte() == 0 ? Rule.BLACK : Rule.WHITE;
+		result = in.readByte();
+		score = in.readShort();
+	}
+	/**
+		学習の目標にする値を返します
+		@param lambda 探索の評価値の割合(0なら石差だけ)
+		@return double 黒から見た石差の100倍
+	*/
+	public double target(double lambda)
+	{
+		if(score == NO_SCORE || lambda == 0)return result * 100.0;
+		return lambda * score + (1 - lambda) * result * 100.0;
+	}
+	@Override
+	public String toString()
+	{
+		return String.format("%016x %016x %c %d %d", black, white, color == Rule.BLACK ? 'x' : 'o', result, score);
+	}
+}
@@ -0,0 +1,126 @@
+package red.vivid.reversi;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.*;
+
+/**
+	サンプルのファイルか対局の棋譜(.log)からサンプルを1つずつ読み込みます<br>
+	サンプルのファイルはバッファを通して順に読むので、どれだけ大きくてもメモリは増えません<br>
+	棋譜は1局分なので、最初にすべての盤面を読み込んでおきます 探索の評価値はありません
+	@author vividorange
+*/
+public class SampleReader implements Closeable
+{
+	/** 棋譜の盤面の前後にある行 */
+	private static final String BOARD_HEADER = "  A B C D E F G H";
+
+	/** サンプルのファイルの入力 棋譜ならnull */
+	private final DataInputStream in;
+	/** 棋譜から作ったサンプル サンプルのファイルならnull */
+	private final Iterator<Sample> log;
+
+	/**
+		ファイルを開きます 名前が.logで終わるファイルは棋譜として読みます
+		@param path ファイル
+		@throws IOException 開けないか、形式が違うとき
+	*/
+	public SampleReader(Path path) throws IOException
+	{
+		if(path.toString().endsWith(".log"))
+		{
+			in = null;
+			log = parseLog(Files.readAllLines(path, StandardCharsets.UTF_8)).iterator();
+		}
+		else
+		{
+			in = new DataInputStream(new BufferedInputStream(Files.newInputStream(path), 1 << 16));
+			log = null;
+			try
+			{
+				Sample.readHeader(in);
+			}
+			catch(IOException e)
+			{
+				in.close();
+				throw new IOException(path + ": " + e.getMessage(), e);
+			}
+		}
+	}
+	/**
+		次のサンプルを読み込みます
+		@param sample 読み込んだ値を入れるサンプル
+		@return boolean 読み込めたか 終わりならfalse
+		@throws IOException 読めないとき
+	*/
+	public boolean next(Sample sample) throws IOException
+	{
+		if(log != null)
+		{
+			if(!log.hasNext())return false;
+			Sample s = log.next();
+			sample.black = s.black;
+			sample.white = s.white;
+			sample.color = s.color;
+			sample.result = s.result;
+			sample.score = s.score;
+			return true;
+		}
+		try
+		{
+			sample.read(in);
+			return true;
+		}
+		catch(EOFException e)
+		{
+			return false;
+		}
+	}
+	@Override
+	public void close() throws IOException
+	{
+		if(in != null)in.close();
+	}
+	/**
+		ConsoleListenerが書き出した棋譜から、打った後の盤面をサンプルにします<br>
+		手番は石が増えた色の相手で、相手が置けなければ同じ色です 終局した盤面は使いません
+		@param lines 棋譜の行
+		@return List&lt;Sample&gt; サンプル
+	*/
+	static List<Sample> parseLog(List<String> lines)
+	{
+		List<BitBoard> boards = new ArrayList<>();
+		for(int i=0;i<lines.size();++i)
+		{
+			if(!lines.get(i).equals(BOARD_HEADER) || i + 9 >= lines.size())continue;
+			BitBoard board = new BitBoard(0, 0);
+			for(int y=0;y<8;++y)
+			{
+				String[] cells = lines.get(i + 1 + y).trim().split(" ");
+				for(int x=0;x<8 && x+1<cells.length;++x)
+				{
+					if(cells[x + 1].equals("x"))board.black |= 1L << ((y << 3) + x);
+					else if(cells[x + 1].equals("o"))board.white |= 1L << ((y << 3) + x);
+				}
+			}
+			// 盤面の下の行を読み飛ばす
+			i += 9;
+			if(boards.isEmpty() || !boards.get(boards.size() - 1).equals(board))boards.add(board);
+		}
+		List<Sample> samples = new ArrayList<>();
+		if(boards.isEmpty())return samples;
+		BitBoard last = boards.get(boards.size() - 1);
+		int result = last.getStoneCount(Rule.BLACK) - last.getStoneCount(Rule.WHITE);
+		BitBoard prev = new BitBoard();
+		for(BitBoard board : boards)
+		{
+			boolean mover = board.getStoneCount(Rule.BLACK) > prev.getStoneCount(Rule.BLACK) ? Rule.BLACK : Rule.WHITE;
+			prev = board;
+			boolean color = board.getMobility(!mover) != 0 ? !mover : mover;
+			if(board.getMobility(color) == 0)continue;
+			samples.add(new Sample(board, color, result, Sample.NO_SCORE));
+		}
+		return samples;
+	}
+}
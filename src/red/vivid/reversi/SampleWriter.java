@@ -0,0 +1,151 @@
+package red.vivid.reversi;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.file.*;
+import java.util.concurrent.*;
+
+/**
+	サンプルのファイルを別のスレッドで書き出します<br>
+	呼び出したスレッドはレコードをバイト列にしてキューに入れるだけで、書き出しを待ちません<br>
+	キューには上限があり、書き出しが追いつかないときはwriteが空くまで待ちます
+	@author vividorange
+*/
+public class SampleWriter implements Closeable
+{
+	/** 終わりを表すキューの要素 */
+	private static final byte[] END = new byte[0];
+
+	/** 書き出すバイト列 */
+	private final BlockingQueue<byte[]> queue;
+	/** 書き出すスレッド */
+	private final Thread thread;
+	/** 出力 */
+	private final OutputStream out;
+	/** 書き出せなかったときの例外 */
+	private volatile IOException error;
+	/** キューに入れたレコードの数 */
+	private long count;
+	/** closeしたか */
+	private boolean closed;
+
+	/**
+		ファイルを作ってヘッダーを書き出します
+		@param path ファイル
+		@param capacity キューに入れておけるwriteの数
+		@throws IOException 作れないとき
+	*/
+	public SampleWriter(Path path, int capacity) throws IOException
+	{
+		out = new BufferedOutputStream(Files.newOutputStream(path), 1 << 16);
+		Sample.writeHeader(new DataOutputStream(out));
+		queue = new ArrayBlockingQueue<>(capacity);
+		thread = new Thread(this::drain, "SampleWriter");
+		thread.setDaemon(true);
+		thread.start();
+	}
+	/**
+		キューから取り出して書き出し続けます
+	*/
+	private void drain()
+	{
+		try
+		{
+			while(true)
+			{
+				byte[] bytes = queue.take();
+				if(bytes == END)break;
+				// 書き出せなくなっても、writeとcloseが詰まらないようにENDまで取り出しは続ける
+				if(error != null)continue;
+				try
+				{
+					out.write(bytes);
+				}
+				catch(IOException e)
+				{
+					error = e;
+				}
+			}
+			if(error == null)out.flush();
+		}
+		catch(IOException e)
+		{
+			error = e;
+		}
+		catch(InterruptedException e)
+		{
+			// closeされずに止められた
+		}
+	}
+	/**
+		サンプルをまとめてキューに入れます<br>
+		複数のスレッドから呼べます まとめたサンプルは続けて書き出されます
+		@param samples サンプル
+		@param n 先頭から書き出す数
+		@throws IOException 前に書き出せなかったとき
+	*/
+	public void write(Sample[] samples, int n) throws IOException
+	{
+		if(error != null)throw error;
+		ByteBuffer buffer = ByteBuffer.allocate(n * Sample.BYTES);
+		for(int i=0;i<n;++i)
+		{
+			samples[i].write(buffer);
+		}
+		try
+		{
+			queue.put(buffer.array());
+		}
+		catch(InterruptedException e)
+		{
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException();
+		}
+		synchronized(this)
+		{
+			count += n;
+		}
+	}
+	/**
+		キューに入れたレコードの数を返します
+		@return long レコードの数
+	*/
+	public synchronized long getCount()
+	{
+		return count;
+	}
+	/**
+		キューに残ったものを書き出してファイルを閉じます
+		@throws IOException 書き出せなかったとき
+	*/
+	@Override
+	public void close() throws IOException
+	{
+		if(closed)return;
+		closed = true;
+		try
+		{
+			queue.put(END);
+			thread.join();
+		}
+		catch(InterruptedException e)
+		{
+			thread.interrupt();
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException();
+		}
+		finally
+		{
+			try
+			{
+				out.close();
+			}
+			catch(IOException e)
+			{
+				// 先に書き出せなかったときは、そちらの例外を投げる
+				if(error == null)error = e;
+			}
+		}
+		if(error != null)throw error;
+	}
+}
@@ -0,0 +1,355 @@
+package red.vivid.reversi;
+
+/**
+	反復深化ネガマックスアルファベータ探索<br>
+	評価値は石差の100倍(センチディスク)で表します<br>
+	自分のボードの上でdoMoveとundoMoveを繰り返すので、使い回せば探索中にオブジェクトを作りません
+	@author vividorange
+*/
+class Search
+{
+	/** 評価値の上限 */
+	static final int INF = 30000;
+	/** 時間切れを確認するノード間隔 */
+	private static final int CHECK_INTERVAL = 1023;
+	/** 最大の深さ */
+	private static final int MAX_PLY = 64;
+
+	/** マスごとの重み */
+	static final int[] WEIGHT =
+	{
+		100, -20,  10,   5,   5,  10, -20, 100,
+		-20, -50,  -2,  -2,  -2,  -2, -50, -20,
+		 10,  -2,  -1,  -1,  -1,  -1,  -2,  10,
+		  5,  -2,  -1,  -1,  -1,  -1,  -2,   5,
+		  5,  -2,  -1,  -1,  -1,  -1,  -2,   5,
+		 10,  -2,  -1,  -1,  -1,  -1,  -2,  10,
+		-20, -50,  -2,  -2,  -2,  -2, -50, -20,
+		100, -20,  10,   5,   5,  10, -20, 100,
+	};
+
+	/** 探索を打ち切る時刻(System.nanoTime) */
+	private long deadline;
+	/** 反復深化の最大の深さ */
+	private int maxDepth;
+	/** 置換表 */
+	private final TranspositionTable tt;
+	/** 評価関数 */
+	private final Evaluator evaluator;
+	/** 探索中のボード */
+	private final BitBoard board = new BitBoard(0, 0);
+	/** 打った手のスタック */
+	private final MoveStack stack = new MoveStack(MAX_PLY * 2);
+	/** 深さごとの手の並べ替え用バッファ */
+	final int[][] moves = new int[MAX_PLY][64];
+	/** 深さごとの並べ替えキー */
+	private final int[][] keys = new int[MAX_PLY][64];
+
+	/** 探索したノード数 */
+	long nodes;
+	/** 時間切れで打ち切ったか */
+	boolean aborted;
+	/** 他のスレッドから止められたか */
+	private volatile boolean stopped;
+	/** 完了した深さ */
+	int depth;
+	/** 最善手のビット位置(-1は未決定) */
+	int bestPos = -1;
+	/** 最善手の評価値 */
+	int bestScore;
+	/** searchRootが見つけた最善手 */
+	private int rootBest;
+
+	/**
+		マスの重みの評価関数で探索を生成します
+		@param tt 置換表
+	*/
+	Search(TranspositionTable tt)
+	{
+		this(tt, Evaluator.getDefault());
+	}
+	/**
+		探索を生成します
+		@param tt 置換表
+		@param evaluator 評価関数
+	*/
+	Search(TranspositionTable tt, Evaluator evaluator)
+	{
+		this.tt = tt;
+		this.evaluator = evaluator;
+		// 葉ごとに計算し直さないように、探索用のボードでパターンを差分更新する
+		board.trackPatterns();
+	}
+	/**
+		新しい探索のために結果を消して時間と深さを設定します
+		@param deadline 探索を打ち切る時刻(System.nanoTime)
+		@param maxDepth 反復深化の最大の深さ
+	*/
+	void start(long deadline, int maxDepth)
+	{
+		this.deadline = deadline;
+		this.maxDepth = Math.min(maxDepth, MAX_PLY - 1);
+		nodes = 0;
+		aborted = false;
+		stopped = false;
+		depth = 0;
+		bestPos = -1;
+		bestScore = 0;
+	}
+	/**
+		ボードを探索用のボードに写します
+		@param root 探索する局面
+	*/
+	private void setBoard(BitBoard root)
+	{
+		board.set(root);
+		stack.clear();
+	}
+	/**
+		時間切れか最大の深さに達するまで反復深化で探索します
+		@param root 探索するボード
+		@param color 手番の色
+		@param startDepth 最初に読む深さ
+	*/
+	void run(BitBoard root, boolean color, int startDepth)
+	{
+		setBoard(root);
+		long mobility = board.getMobility(color);
+		if(mobility == 0)return;
+		// 時間切れでも必ず手を返せるようにしておく
+		bestPos = Long.numberOfTrailingZeros(mobility);
+
+		for(int d=startDepth;d<=maxDepth;++d)
+		{
+			int score = searchRoot(color, d, mobility);
+			if(aborted)break;
+			bestPos = rootBest;
+			bestScore = score;
+			depth = d;
+			// 空きマスを読み切ったらそれ以上深くしても変わらない
+			if(d >= board.getEmptyCount())break;
+		}
+	}
+
+	/**
+		別のスレッドから探索を止めます<br>
+		runは時間切れと同じように、最後に読み切った深さの結果を残して戻ります
+	*/
+	void stop()
+	{
+		stopped = true;
+	}
+	/**
+		探索を打ち切るべきかを返します<br>
+		一定のノード数ごとに呼ばれます
+		@return boolean 止められたか時間切れならtrue
+	*/
+	boolean interrupted()
+	{
+		return stopped || System.nanoTime() - deadline > 0;
+	}
+	/**
+		ルート以外の局面を窓を指定して探索します
+		@param root 探索するボード
+		@param color 手番の色
+		@param d 残りの深さ
+		@param alpha 下限
+		@param beta 上限
+		@return int 手番から見た評価値 abortedなら意味を持ちません
+	*/
+	int search(BitBoard root, boolean color, int d, int alpha, int beta)
+	{
+		setBoard(root);
+		aborted = false;
+		return negamax(color, d, alpha, beta, false, 1);
+	}
+	/**
+		ルート局面を探索します
+		@param color 手番の色
+		@param d 深さ
+		@param mobility 合法手
+		@return int 評価値
+	*/
+	private int searchRoot(boolean color, int d, long mobility)
+	{
+		int alpha = -INF;
+		int beta = INF;
+		int best = bestPos;
+		// 前回の最善手を最初に読む
+		int n = 0;
+		int[] list = moves[0];
+		list[n++] = best;
+		for(long m = mobility & ~(1L << best); m != 0; m &= m - 1)
+		{
+			list[n++] = Long.numberOfTrailingZeros(m);
+		}
+		for(int i=0;i<n;++i)
+		{
+			long pos = 1L << list[i];
+			board.doMove(stack, color, pos, board.toRev(color, pos));
+			int score = -negamax(!color, d - 1, -beta, -alpha, false, 1);
+			board.undoMove(stack);
+			if(aborted)return alpha;
+			if(score > alpha)
+			{
+				alpha = score;
+				best = list[i];
+			}
+		}
+		rootBest = best;
+		tt.store(key(board, color), best, d, TranspositionTable.EXACT, alpha);
+		return alpha;
+	}
+	/**
+		ネガマックスアルファベータ法で探索します
+		@param color 手番の色
+		@param d 残りの深さ
+		@param alpha 下限
+		@param beta 上限
+		@param passed 直前の手がパスか
+		@param ply ルートからの手数
+		@return int 手番から見た評価値
+	*/
+	private int negamax(boolean color, int d, int alpha, int beta, boolean passed, int ply)
+	{
+		if((++nodes & CHECK_INTERVAL) == 0 && interrupted())
+		{
+			aborted = true;
+		}
+		if(aborted)return 0;
+
+		long mobility = board.getMobility(color);
+		if(mobility == 0)
+		{
+			if(passed)return finalScore(board, color);
+			return -negamax(!color, d, -beta, -alpha, true, ply);
+		}
+		if(d <= 0)return evaluate(color);
+
+		long key = key(board, color);
+		long data = tt.probe(key);
+		int ttMove = TranspositionTable.NO_MOVE;
+		if(data != 0)
+		{
+			ttMove = TranspositionTable.moveOf(data);
+			if(TranspositionTable.depthOf(data) >= d)
+			{
+				int v = TranspositionTable.scoreOf(data);
+				int bound = TranspositionTable.boundOf(data);
+				if(bound == TranspositionTable.EXACT)return v;
+				if(bound == TranspositionTable.LOWER && v > alpha)alpha = v;
+				else if(bound == TranspositionTable.UPPER && v < beta)beta = v;
+				if(alpha >= beta)return v;
+			}
+		}
+
+		int alpha0 = alpha;
+		int n = order(board, color, mobility, d, ply, ttMove);
+		int[] list = moves[ply];
+		int best = -INF;
+		int bestMove = TranspositionTable.NO_MOVE;
+		for(int i=0;i<n;++i)
+		{
+			long pos = 1L << list[i];
+			board.doMove(stack, color, pos, board.toRev(color, pos));
+			int score = -negamax(!color, d - 1, -beta, -alpha, false, ply + 1);
+			board.undoMove(stack);
+			if(score > best)
+			{
+				best = score;
+				if(score > alpha)
+				{
+					alpha = score;
+					bestMove = list[i];
+					if(alpha >= beta)break;
+				}
+			}
+		}
+		if(aborted)return 0;
+		int bound = best >= beta ? TranspositionTable.LOWER
+			: best > alpha0 ? TranspositionTable.EXACT : TranspositionTable.UPPER;
+		tt.store(key, bestMove, d, bound, best);
+		return best;
+	}
+	/**
+		合法手をmoves[ply]に並べます<br>
+		置換表の手を最初に、深い所では相手の合法手が少なくなる手から読みます
+		@param board ボード
+		@param color 手番の色
+		@param mobility 合法手
+		@param d 残りの深さ
+		@param ply ルートからの手数
+		@param ttMove 置換表の最善手(なければNO_MOVE)
+		@return int 手の数
+	*/
+	int order(BitBoard board, boolean color, long mobility, int d, int ply, int ttMove)
+	{
+		int[] list = moves[ply];
+		int n = 0;
+		if(ttMove != TranspositionTable.NO_MOVE && (mobility >>> ttMove & 1) != 0)
+		{
+			list[n++] = ttMove;
+			mobility &= ~(1L << ttMove);
+		}
+		int first = n;
+		if(d < 3)
+		{
+			for(long m = mobility; m != 0; m &= m - 1)
+			{
+				list[n++] = Long.numberOfTrailingZeros(m);
+			}
+			return n;
+		}
+		int[] key = keys[ply];
+		for(long m = mobility; m != 0; m &= m - 1)
+		{
+			int k = Long.numberOfTrailingZeros(m);
+			long pos = 1L << k;
+			long rev = board.toRev(color, pos);
+			long my = (color == Rule.BLACK ? board.black : board.white) ^ (pos | rev);
+			long opp = (color == Rule.BLACK ? board.white : board.black) ^ rev;
+			int v = Long.bitCount(BitBoard.getReversiblePos(opp, my)) * 100 - WEIGHT[k];
+			// 挿入ソート
+			int i = n++;
+			for(;i>first && key[i-1] > v;--i)
+			{
+				list[i] = list[i-1];
+				key[i] = key[i-1];
+			}
+			list[i] = k;
+			key[i] = v;
+		}
+		return n;
+	}
+	/**
+		置換表のキーを返します
+		@param board ボード
+		@param color 手番の色
+		@return long キー
+	*/
+	static long key(BitBoard board, boolean color)
+	{
+		return board.getHash(color);
+	}
+	/**
+		終局した盤面の評価値を返します
+		@param board ボード
+		@param color 手番の色
+		@return int 手番から見た石差の100倍
+	*/
+	static int finalScore(BitBoard board, boolean color)
+	{
+		int diff = board.getStoneCount(color) - board.getStoneCount(!color);
+		return diff * 100;
+	}
+	/**
+		探索中のボードを評価関数で静的に評価します
+		@param color 手番の色
+		@return int 手番から見た評価値
+	*/
+	int evaluate(boolean color)
+	{
+		int v = evaluator.evaluate(board.getPatterns(), board.black, board.white);
+		return color == Rule.BLACK ? v : -v;
+	}
+}
@@ -0,0 +1,254 @@
+package red.vivid.reversi;
+
+import java.io.IOException;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.function.Consumer;
+
+/**
+	評価関数の学習のためにAI同士を並列に何局も対局させて、局面をサンプルとして書き出します<br>
+	序盤の数手をランダムに打ってから、両方のAIが決まった深さで読んで打ちます<br>
+	AIが読んだ局面ごとに、黒から見た探索の評価値と終局したときの石差を記録します<br>
+	スレッドごとに黒と白のAIを1つずつ作って、置換表ごと対局をまたいで使い回します
+	@author vividorange
+*/
+public class SelfPlay
+{
+	/** 決まった深さで読ませるための十分長い思考時間(ミリ秒) */
+	private static final long NO_TIME_LIMIT = 3600000;
+
+	/** 対局させるスレッド数 */
+	private int threads = Runtime.getRuntime().availableProcessors();
+	/** 読む深さ */
+	private int depth = 4;
+	/** 最初にランダムに打つ手数 */
+	private int randomMoves = 8;
+	/** この空きマス数以下で石差を完全読みする */
+	private int solveDepth = 12;
+	/** AIごとの置換表のサイズ(MB) */
+	private int hashSize = 4;
+	/** 乱数の種 */
+	private long seed = 1;
+	/** 1局ごとに呼ばれる */
+	private Consumer<Result> progress;
+
+	/**
+		対局させるスレッド数を設定します
+		@param threads スレッド数
+	*/
+	public void setThreads(int threads)
+	{
+		this.threads = Math.max(1, threads);
+	}
+	/**
+		AIが読む深さを設定します
+		@param depth 深さ
+	*/
+	public void setDepth(int depth)
+	{
+		this.depth = Math.max(1, depth);
+	}
+	/**
+		最初にランダムに打つ手数を設定します
+		@param moves 手数
+	*/
+	public void setRandomMoves(int moves)
+	{
+		this.randomMoves = Math.max(0, moves);
+	}
+	/**
+		石差を完全読みする空きマス数を設定します 読み切った局面の評価値は正確な石差になります
+		@param empties 空きマス数
+	*/
+	public void setSolveDepth(int empties)
+	{
+		this.solveDepth = empties;
+	}
+	/**
+		AIごとの置換表のサイズを設定します
+		@param megabytes サイズ(MB)
+	*/
+	public void setHashSize(int megabytes)
+	{
+		this.hashSize = megabytes;
+	}
+	/**
+		乱数の種を設定します
+		@param seed 乱数の種
+	*/
+	public void setSeed(long seed)
+	{
+		this.seed = seed;
+	}
+	/**
+		1局ごとに呼ばれる処理を設定します<br>
+		複数のスレッドから呼ばれますが、同時には呼ばれません
+		@param progress 途中経過を受け取る処理
+	*/
+	public void setProgress(Consumer<Result> progress)
+	{
+		this.progress = progress;
+	}
+	/**
+		指定した数だけ対局させて、サンプルを書き出します
+		@param games 対局数
+		@param writer 書き出し先
+		@return Result 結果
+		@throws IOException 書き出せないとき
+	*/
+	public Result run(int games, SampleWriter writer) throws IOException
+	{
+		final Result result = new Result();
+		final int[] started = new int[1];
+		ExecutorService pool = Executors.newFixedThreadPool(threads);
+		try
+		{
+			List<Future<?>> futures = new ArrayList<>();
+			for(int t=0;t<threads;++t)
+			{
+				// スレッドごとに種を変えて、同じ序盤ばかりにならないようにする
+				final Playout random = new Playout(seed * 0x9e3779b97f4a7c15L + t);
+				futures.add(pool.submit(() -> {
+					AI black = newAI(Rule.BLACK);
+					AI white = newAI(Rule.WHITE);
+					Sample[] samples = new Sample[64];
+					for(int i=0;i<samples.length;++i)samples[i] = new Sample();
+					try
+					{
+						while(true)
+						{
+							synchronized(result)
+							{
+								if(started[0] >= games)return null;
+								++started[0];
+							}
+							int n = play(random, black, white, samples);
+							writer.write(samples, n);
+							synchronized(result)
+							{
+								++result.games;
+								result.samples += n;
+								if(progress != null)progress.accept(result);
+							}
+						}
+					}
+					finally
+					{
+						black.shutdown();
+						white.shutdown();
+					}
+				}));
+			}
+			for(Future<?> f : futures)
+			{
+				f.get();
+			}
+		}
+		catch(InterruptedException e)
+		{
+			Thread.currentThread().interrupt();
+			throw new java.io.InterruptedIOException();
+		}
+		catch(ExecutionException e)
+		{
+			if(e.getCause() instanceof IOException)throw (IOException)e.getCause();
+			throw new IllegalStateException(e.getCause());
+		}
+		finally
+		{
+			pool.shutdownNow();
+		}
+		return result;
+	}
+	/**
+		決まった深さで読むAIを作ります<br>
+		定跡の手はサンプルにならないので、定跡は使いません
+		@param color AIの色
+		@return AI AI
+	*/
+	private AI newAI(boolean color)
+	{
+		AI ai = new AI(color, NO_TIME_LIMIT);
+		ai.setMaxDepth(depth);
+		ai.setSolveDepth(solveDepth);
+		ai.setWLDDepth(solveDepth);
+		ai.setHashSize(hashSize);
+		ai.setBook(null);
+		return ai;
+	}
+	/**
+		1局打って、AIが読んだ局面をサンプルに入れます
+		@param random 序盤の手を選ぶ乱数
+		@param black 黒のAI
+		@param white 白のAI
+		@param samples サンプルを入れる配列 60手分あります
+		@return int サンプルの数
+	*/
+	private int play(Playout random, AI black, AI white, Sample[] samples)
+	{
+		BitBoard board = new BitBoard();
+		boolean color = Rule.BLACK;
+		int n = 0;
+		int moves = 0;
+		while(!board.isFinished())
+		{
+			long mobility = board.getMobility(color);
+			if(mobility != 0)
+			{
+				int k;
+				if(moves < randomMoves)
+				{
+					k = random.randomMove(mobility);
+				}
+				else
+				{
+					AI ai = color == Rule.BLACK ? black : white;
+					k = ai.selectPos(board);
+					Sample s = samples[n++];
+					s.black = board.black;
+					s.white = board.white;
+					s.color = color;
+					s.score = color == Rule.BLACK ? ai.getScore() : -ai.getScore();
+				}
+				board.putStone(color, k);
+				++moves;
+			}
+			color = !color;
+		}
+		int diff = board.getStoneCount(Rule.BLACK) - board.getStoneCount(Rule.WHITE);
+		for(int i=0;i<n;++i)
+		{
+			samples[i].result = diff;
+		}
+		return n;
+	}
+
+	/**
+		自己対局の途中経過
+	*/
+	public static final class Result
+	{
+		/** 開始した時刻(System.nanoTime) */
+		private final long start = System.nanoTime();
+		/** 打ち終わった対局数 */
+		public int games;
+		/** 書き出したサンプル数 */
+		public long samples;
+
+		/**
+			1秒あたりの対局数を返します
+			@return double 対局数/秒
+		*/
+		public double getGamesPerSecond()
+		{
+			long elapsed = System.nanoTime() - start;
+			return elapsed > 0 ? games * 1e9 / elapsed : 0;
+		}
+		@Override
+		public String toString()
+		{
+			return String.format("games:%d samples:%d (%.1f games/s, %.0f games/day)",
+				games, samples, getGamesPerSecond(), getGamesPerSecond() * 86400);
+		}
+	}
+}
@@ -0,0 +1,108 @@
+package red.vivid.reversi;
+
+/**
+	逐次確率比検定(SPRT)<br>
+	「AはBよりelo0強い」(H0)と「elo1強い」(H1)のどちらが正しいかを、結果が出るたびに対数尤度比(LLR)で判定します<br>
+	先手後手を入れ替えた2局をまとめたペアの得点(0, 0.5, 1, 1.5, 2)の分布(ペンタノミアル)を使うので、
+	同じ序盤から打った2局の相関を正しく扱えます<br>
+	LLRは正規分布で近似した一般化SPRTで計算します
+	@author vividorange
+*/
+public class Sprt
+{
+	/** 判定がまだつかない */
+	public static final int CONTINUE = 0;
+	/** H0を採択した(elo1ほど強くない) */
+	public static final int H0 = -1;
+	/** H1を採択した(elo1以上強い) */
+	public static final int H1 = 1;
+
+	/** ペンタノミアルの度数に足す値 5つ合わせて1ペア分の事前分布になる */
+	private static final double PRIOR = 0.2;
+
+	/** H0のレーティング差 */
+	public final double elo0;
+	/** H1のレーティング差 */
+	public final double elo1;
+	/** LLRの下限 これを下回るとH0を採択 */
+	public final double lower;
+	/** LLRの上限 これを上回るとH1を採択 */
+	public final double upper;
+
+	/**
+		第1種と第2種の誤りの確率を0.05として検定を生成します
+		@param elo0 H0のレーティング差
+		@param elo1 H1のレーティング差
+	*/
+	public Sprt(double elo0, double elo1)
+	{
+		this(elo0, elo1, 0.05, 0.05);
+	}
+	/**
+		誤りの確率を指定して検定を生成します
+		@param elo0 H0のレーティング差
+		@param elo1 H1のレーティング差
+		@param alpha 第1種の誤り(H0が正しいのにH1を採択する)の確率
+		@param beta 第2種の誤り(H1が正しいのにH0を採択する)の確率
+	*/
+	public Sprt(double elo0, double elo1, double alpha, double beta)
+	{
+		if(elo0 >= elo1)throw new IllegalArgumentException("elo0はelo1より小さくしてください");
+		this.elo0 = elo0;
+		this.elo1 = elo1;
+		this.lower = Math.log(beta / (1 - alpha));
+		this.upper = Math.log((1 - beta) / alpha);
+	}
+	/**
+		ペンタノミアルの度数から対数尤度比を計算します
+		@param pentanomial ペアの得点が0, 0.5, 1, 1.5, 2だった数
+		@return double 対数尤度比
+	*/
+	public double llr(int[] pentanomial)
+	{
+		double n = 0;
+		double sum = 0;
+		double sum2 = 0;
+		for(int k=0;k<5;++k)
+		{
+			// 数ペアしか打っていないときや全勝のときに分散が0に近づかないように、すべての度数に事前分布を足す
+			double c = pentanomial[k] + PRIOR;
+			// ペアの1局あたりの得点
+			double x = k * 0.25;
+			n += c;
+			sum += c * x;
+			sum2 += c * x * x;
+		}
+		double mu = sum / n;
+		double var = sum2 / n - mu * mu;
+		if(var <= 0)return 0;
+		double s0 = score(elo0);
+		double s1 = score(elo1);
+		return n * (s1 - s0) * (2 * mu - s0 - s1) / (2 * var);
+	}
+	/**
+		対数尤度比から判定します
+		@param llr 対数尤度比
+		@return int H0, H1, CONTINUEのいずれか
+	*/
+	public int decide(double llr)
+	{
+		if(llr <= lower)return H0;
+		if(llr >= upper)return H1;
+		return CONTINUE;
+	}
+	/**
+		レーティング差を期待される勝率にします
+		@param elo レーティング差
+		@return double 勝率
+	*/
+	static double score(double elo)
+	{
+		return 1 / (1 + Math.pow(10, -elo / 400));
+	}
+	@Override
+	public String toString()
+	{
+		return String.format("SPRT elo0:%.1f elo1:%.1f LLR(%.2f, %.2f)", elo0, elo1, lower, upper);
+	}
+}
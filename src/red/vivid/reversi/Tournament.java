@@ -0,0 +1,402 @@
+package red.vivid.reversi;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.function.*;
+
+/**
+	2つのAIを1つのJVMの中で何局も並列に対局させて強さを比べます<br>
+	ランダムに作った序盤の局面から、先手と後手を入れ替えて2局ずつ打ちます(ペア)<br>
+	結果はAから見た勝ち、負け、引き分けと、そこから求めたレーティング差です
+	@author vividorange
+*/
+public class Tournament
+{
+	/** AのAIを作る */
+	private final Function<Boolean, ? extends AI> a;
+	/** BのAIを作る */
+	private final Function<Boolean, ? extends AI> b;
+	/** 同時に打つ対局の数 */
+	private int threads = Runtime.getRuntime().availableProcessors();
+	/** 序盤にランダムに打つ手数 */
+	private int openingMoves = 8;
+	/** 序盤の局面を作る乱数の種 */
+	private long seed = 1;
+	/** ペアを打ち終わるたびに呼ばれる */
+	private Consumer<Result> progress;
+	/** 途中で打ち切るための検定 nullなら決めた数だけ打つ */
+	private Sprt sprt;
+
+	/**
+		対局させる2つのAIの作り方を指定してトーナメントを生成します<br>
+		スレッドごとに、AとBのそれぞれの色のAIを1つずつ作って、newGameで置換表を消しながら対局をまたいで使い回します
+		@param a AのAIを作る関数
+		@param b BのAIを作る関数
+	*/
+	public Tournament(Function<Boolean, ? extends AI> a, Function<Boolean, ? extends AI> b)
+	{
+		this.a = a;
+		this.b = b;
+	}
+	/**
+		クラス名からAIを作る関数を返します<br>
+		AIのサブクラスで、色を引数に取るコンストラクタを持っている必要があります<br>
+		探索の強さを比べるので、作ったAIは定跡を使いません
+		@param className AIのクラス名(パッケージを省略するとred.vivid.reversi)
+		@param timeLimit 1手あたりの思考時間(ミリ秒) 0以下ならクラスの既定値のまま
+		@return Function 色を渡すとAIを返す関数
+		@throws IllegalArgumentException クラスが見つからないかAIのサブクラスでないとき
+	*/
+	public static Function<Boolean, AI> factory(String className, long timeLimit)
+	{
+		Class<? extends AI> type;
+		try
+		{
+			String name = className.indexOf('.') < 0 ? "red.vivid.reversi." + className : className;
+			type = Class.forName(name).asSubclass(AI.class);
+		}
+		catch(ClassNotFoundException | ClassCastException e)
+		{
+			throw new IllegalArgumentException("AIのクラスではありません: " + className, e);
+		}
+		final java.lang.reflect.Constructor<? extends AI> constructor;
+		try
+		{
+			constructor = type.getConstructor(boolean.class);
+		}
+		catch(NoSuchMethodException e)
+		{
+			throw new IllegalArgumentException("色を引数に取るコンストラクタがありません: " + className, e);
+		}
+		return color -> {
+			try
+			{
+				AI ai = constructor.newInstance(color);
+				if(timeLimit > 0)ai.setTimeLimit(timeLimit);
+				ai.setBook(null);
+				return ai;
+			}
+			catch(ReflectiveOperationException e)
+			{
+				throw new IllegalStateException(e);
+			}
+		};
+	}
+	/**
+		同時に打つ対局の数を設定します
+		@param threads スレッド数
+	*/
+	public void setThreads(int threads)
+	{
+		this.threads = Math.max(1, threads);
+	}
+	/**
+		序盤にランダムに打つ手数を設定します
+		@param moves 手数
+	*/
+	public void setOpeningMoves(int moves)
+	{
+		this.openingMoves = Math.max(0, moves);
+	}
+	/**
+		序盤の局面を作る乱数の種を設定します<br>
+		同じ種なら同じ序盤の局面の並びで対局します
+		@param seed 乱数の種
+	*/
+	public void setSeed(long seed)
+	{
+		this.seed = seed;
+	}
+	/**
+		ペアを打ち終わるたびに途中結果を受け取る関数を設定します<br>
+		複数のスレッドから呼ばれることはありません
+		@param progress 途中結果を受け取る関数
+	*/
+	public void setProgress(Consumer<Result> progress)
+	{
+		this.progress = progress;
+	}
+	/**
+		逐次確率比検定を設定します<br>
+		設定すると、runはH0かH1が採択された時点で打ち切ります
+		@param sprt 検定 nullなら打ち切りません
+	*/
+	public void setSprt(Sprt sprt)
+	{
+		this.sprt = sprt;
+	}
+	/**
+		指定した数のペアを対局させます<br>
+		検定が設定されていれば、判定がついたところで打ち切ります
+		@param pairs ペアの最大の数 対局数はこの2倍です
+		@return Result 結果
+	*/
+	public Result run(int pairs)
+	{
+		final Result result = new Result(sprt);
+		final Random random = new Random(seed);
+		// 序盤の手数が奇数なら白番から始まる
+		final boolean start = (openingMoves & 1) == 0 ? Rule.BLACK : Rule.WHITE;
+		final int[] started = new int[1];
+		ExecutorService pool = Executors.newFixedThreadPool(threads);
+		try
+		{
+			List<Future<?>> futures = new ArrayList<>();
+			for(int t=0;t<threads;++t)
+			{
+				futures.add(pool.submit(() -> {
+					AI aBlack = a.apply(Rule.BLACK);
+					AI aWhite = a.apply(Rule.WHITE);
+					AI bBlack = b.apply(Rule.BLACK);
+					AI bWhite = b.apply(Rule.WHITE);
+					try
+					{
+						while(true)
+						{
+							BitBoard opening;
+							synchronized(result)
+							{
+								if(result.decision != Sprt.CONTINUE || started[0] >= pairs)return;
+								++started[0];
+								opening = opening(random);
+							}
+							int first = play(opening, start, aBlack, bWhite);
+							int second = -play(opening, start, bBlack, aWhite);
+							synchronized(result)
+							{
+								// 判定がついた後に打ち終わったペアは数えない
+								if(result.decision != Sprt.CONTINUE)return;
+								result.add(first, second);
+								if(progress != null)progress.accept(result);
+							}
+						}
+					}
+					finally
+					{
+						aBlack.shutdown();
+						aWhite.shutdown();
+						bBlack.shutdown();
+						bWhite.shutdown();
+					}
+				}));
+			}
+			for(Future<?> f : futures)
+			{
+				f.get();
+			}
+		}
+		catch(InterruptedException | ExecutionException e)
+		{
+			throw new IllegalStateException(e);
+		}
+		finally
+		{
+			pool.shutdownNow();
+		}
+		return result;
+	}
+	/**
+		ランダムに序盤の局面を作ります<br>
+		途中でパスが起きた局面は作り直すので、手番は手数の偶奇で決まります
+		@param random 乱数
+		@return BitBoard 序盤の局面
+	*/
+	private BitBoard opening(Random random)
+	{
+		retry:
+		while(true)
+		{
+			BitBoard board = new BitBoard();
+			boolean color = Rule.BLACK;
+			for(int i=0;i<openingMoves;++i)
+			{
+				long mobility = board.getMobility(color);
+				if(mobility == 0)continue retry;
+				int rnd = random.nextInt(Long.bitCount(mobility));
+				for(;rnd>0;--rnd)mobility &= mobility - 1;
+				board.putStone(color, Long.numberOfTrailingZeros(mobility));
+				color = !color;
+			}
+			if(board.getMobility(color) != 0)return board;
+		}
+	}
+	/**
+		1局打ちます
+		@param opening 始める局面
+		@param start 始める局面の手番の色
+		@param blackAI 黒のAI
+		@param whiteAI 白のAI
+		@return int 黒から見た石差
+	*/
+	private static int play(BitBoard opening, boolean start, AI blackAI, AI whiteAI)
+	{
+		BitBoard board = opening.copy();
+		blackAI.newGame();
+		whiteAI.newGame();
+		boolean color = start;
+		while(!board.isFinished())
+		{
+			if(board.getMobility(color) != 0)
+			{
+				AI ai = color == Rule.BLACK ? blackAI : whiteAI;
+				int k = ai.selectPos(board);
+				if(!board.putStone(color, k))
+				{
+					throw new IllegalStateException(ai.getClass().getName() + "が置けない場所に打ちました: " + k);
+				}
+			}
+			color = !color;
+		}
+		return board.getStoneCount(Rule.BLACK) - board.getStoneCount(Rule.WHITE);
+	}
+
+	/**
+		トーナメントの結果<br>
+		勝ち負けはすべてAから見た数です
+	*/
+	public static final class Result
+	{
+		/** 勝ち */
+		public int wins;
+		/** 負け */
+		public int losses;
+		/** 引き分け */
+		public int draws;
+		/** ペアの得点(0, 0.5, 1, 1.5, 2)ごとのペアの数 */
+		public final int[] pentanomial = new int[5];
+		/** 検定 なければnull */
+		public final Sprt sprt;
+		/** 対数尤度比 */
+		public double llr;
+		/** 検定の判定 Sprt.H0, Sprt.H1, Sprt.CONTINUEのいずれか */
+		public int decision = Sprt.CONTINUE;
+		/** 開始した時刻(System.nanoTime) */
+		private final long start = System.nanoTime();
+		/** 最後に結果を加えた時刻(System.nanoTime) */
+		private long last = start;
+
+		/**
+			結果を生成します
+			@param sprt 検定 なければnull
+		*/
+		Result(Sprt sprt)
+		{
+			this.sprt = sprt;
+		}
+
+		/**
+			ペアの結果を加えます
+			@param first 1局目のAから見た石差
+			@param second 2局目のAから見た石差
+		*/
+		void add(int first, int second)
+		{
+			++pentanomial[add(first) + add(second)];
+			last = System.nanoTime();
+			if(sprt != null)
+			{
+				llr = sprt.llr(pentanomial);
+				decision = sprt.decide(llr);
+			}
+		}
+		/**
+			1局の結果を加えます
+			@param diff Aから見た石差
+			@return int Aの得点の2倍(勝ち2、引き分け1、負け0)
+		*/
+		private int add(int diff)
+		{
+			if(diff > 0)
+			{
+				++wins;
+				return 2;
+			}
+			if(diff < 0)
+			{
+				++losses;
+				return 0;
+			}
+			++draws;
+			return 1;
+		}
+		/**
+			ペアの数を返します
+			@return int ペアの数
+		*/
+		public int getPairs()
+		{
+			int n = 0;
+			for(int c : pentanomial)n += c;
+			return n;
+		}
+		/**
+			対局数を返します
+			@return int 対局数
+		*/
+		public int getGames()
+		{
+			return wins + losses + draws;
+		}
+		/**
+			引き分けを0.5勝としたAの勝率を返します
+			@return double 勝率
+		*/
+		public double getScore()
+		{
+			int n = getGames();
+			return n > 0 ? (wins + draws * 0.5) / n : 0.5;
+		}
+		/**
+			勝率から求めたAのBに対するレーティング差を返します
+			@return double レーティング差 全勝や全敗なら無限大
+		*/
+		public double getElo()
+		{
+			return elo(getScore());
+		}
+		/**
+			レーティング差の95%信頼区間の半分の幅を返します
+			@return double レーティング差の誤差
+		*/
+		public double getEloError()
+		{
+			int n = getGames();
+			if(n == 0)return Double.POSITIVE_INFINITY;
+			double mu = getScore();
+			if(mu <= 0 || mu >= 1)return Double.POSITIVE_INFINITY;
+			double var = (wins + draws * 0.25) / n - mu * mu;
+			double delta = 1.96 * Math.sqrt(var / n);
+			return (elo(mu + delta) - elo(mu - delta)) / 2;
+		}
+		/**
+			1秒あたりの対局数を返します
+			@return double 対局数/秒
+		*/
+		public double getGamesPerSecond()
+		{
+			long t = last - start;
+			return t > 0 ? getGames() * 1e9 / t : 0;
+		}
+		/**
+			勝率をレーティング差にします
+			@param score 勝率
+			@return double レーティング差
+		*/
+		static double elo(double score)
+		{
+			if(score <= 0)return Double.NEGATIVE_INFINITY;
+			if(score >= 1)return Double.POSITIVE_INFINITY;
+			return -400 * Math.log10(1 / score - 1);
+		}
+		@Override
+		public String toString()
+		{
+			String s = String.format("%d局 勝ち:%d 負け:%d 引き分け:%d 勝率:%.3f Elo:%+.1f ±%.1f %.2f局/秒",
+				getGames(), wins, losses, draws, getScore(), getElo(), getEloError(), getGamesPerSecond());
+			if(sprt == null)return s;
+			String state = decision == Sprt.H1 ? "H1採択" : decision == Sprt.H0 ? "H0採択" : "継続";
+			return s + String.format(" ペア%s LLR:%.2f (%.2f, %.2f) %s",
+				Arrays.toString(pentanomial), llr, sprt.lower, sprt.upper, state);
+		}
+	}
+}
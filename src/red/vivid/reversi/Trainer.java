@@ -0,0 +1,483 @@
+package red.vivid.reversi;
+
+import java.io.*;
+import java.nio.ShortBuffer;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.function.Consumer;
+
+/**
+	サンプルからパターンの重みを学習します<br>
+	ミニバッチの勾配法で、最小二乗(石差を当てる)かロジスティック回帰(勝ち負けを当てる)を解きます<br>
+	読み込み用のスレッドがファイルを順に読んでバッチを作り、特徴の取り出しと予測は複数のスレッドで分けて計算します<br>
+	バッチは数個を使い回すので、サンプルがいくつあってもメモリは増えません
+	@author vividorange
+*/
+public class Trainer
+{
+	/**
+		損失関数
+	*/
+	public enum Loss
+	{
+		/** 石差の100倍との二乗誤差 */
+		SQUARED,
+		/** 勝率との交差エントロピー */
+		LOGISTIC
+	}
+
+	/** 1つのサンプルの特徴の数 パターンと合法手の数の差 */
+	private static final int FEATURES = Pattern.COUNT + 1;
+	/** ロジスティック回帰で評価値を勝率にするときの尺度(石差の100倍) */
+	private static final double LOGISTIC_SCALE = 600;
+	/** 読み込みと計算で使い回すバッチの数 */
+	private static final int BATCHES = 3;
+
+	/** 特徴を計算するスレッド数 */
+	private int threads = Runtime.getRuntime().availableProcessors();
+	/** 1つのバッチのサンプル数 */
+	private int batchSize = 16384;
+	/** 学習率 */
+	private double rate = 0.02;
+	/** 入力を何周するか */
+	private int epochs = 1;
+	/** 目標に探索の評価値を混ぜる割合 */
+	private double lambda;
+	/** 損失関数 */
+	private Loss loss = Loss.SQUARED;
+	/** 1周ごとに呼ばれる */
+	private Consumer<Progress> progress = p -> {};
+
+	/** 学習中の重み */
+	private final float[] weights = new float[Evaluator.WEIGHTS];
+	/** バッチの勾配 */
+	private final float[] gradient = new float[Evaluator.WEIGHTS];
+	/** バッチの特徴の二乗和 */
+	private final float[] norm = new float[Evaluator.WEIGHTS];
+
+	/**
+		評価関数の重みから学習を始めます
+		@param initial 初めの評価関数
+	*/
+	public Trainer(Evaluator initial)
+	{
+		ShortBuffer w = initial.getWeights();
+		for(int i=0;i<weights.length;++i)
+		{
+			weights[i] = w.get(i);
+		}
+	}
+	/**
+		特徴を計算するスレッド数を設定します 読み込みには別に1つ使います
+		@param threads スレッド数
+	*/
+	public void setThreads(int threads)
+	{
+		this.threads = Math.max(1, threads);
+	}
+	/**
+		1つのバッチのサンプル数を設定します
+		@param batchSize サンプル数
+	*/
+	public void setBatchSize(int batchSize)
+	{
+		this.batchSize = batchSize;
+	}
+	/**
+		学習率を設定します<br>
+		1つの重みは、バッチで誤差に特徴を掛けた和を特徴の二乗和で割った値にこれを掛けただけ動きます
+		サンプルごとにFEATURES個の重みが同時に動くので、その逆数くらいにします
+		@param rate 学習率
+	*/
+	public void setRate(double rate)
+	{
+		this.rate = rate;
+	}
+	/**
+		入力を何周するかを設定します
+		@param epochs 周回数
+	*/
+	public void setEpochs(int epochs)
+	{
+		this.epochs = epochs;
+	}
+	/**
+		目標に探索の評価値を混ぜる割合を設定します<br>
+		0なら終局したときの石差だけ、1なら探索の評価値だけを目標にします 評価値がないサンプルは石差を使います
+		@param lambda 割合
+	*/
+	public void setLambda(double lambda)
+	{
+		this.lambda = lambda;
+	}
+	/**
+		損失関数を設定します
+		@param loss 損失関数
+	*/
+	public void setLoss(Loss loss)
+	{
+		this.loss = loss;
+	}
+	/**
+		1周ごとに呼ばれる処理を設定します
+		@param progress 途中経過を受け取る処理
+	*/
+	public void setProgress(Consumer<Progress> progress)
+	{
+		this.progress = progress;
+	}
+	/**
+		ファイルを読んで学習します
+		@param inputs サンプルのファイルか棋譜
+		@return Evaluator 学習した評価関数
+		@throws IOException 読めないとき
+	*/
+	public Evaluator train(List<Path> inputs) throws IOException
+	{
+		ExecutorService pool = Executors.newFixedThreadPool(threads);
+		try
+		{
+			for(int epoch=1;epoch<=epochs;++epoch)
+			{
+				progress.accept(runEpoch(inputs, pool, epoch));
+			}
+		}
+		catch(InterruptedException e)
+		{
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException();
+		}
+		finally
+		{
+			pool.shutdownNow();
+		}
+		return toEvaluator();
+	}
+	/**
+		入力を1周します
+		@param inputs サンプルのファイルか棋譜
+		@param pool 特徴を計算するスレッド
+		@param epoch 何周目か
+		@return Progress この周の結果
+		@throws IOException 読めないとき
+		@throws InterruptedException 割り込まれたとき
+	*/
+	private Progress runEpoch(List<Path> inputs, ExecutorService pool, int epoch) throws IOException, InterruptedException
+	{
+		long start = System.nanoTime();
+		BlockingQueue<Batch> free = new ArrayBlockingQueue<>(BATCHES);
+		BlockingQueue<Batch> full = new ArrayBlockingQueue<>(BATCHES);
+		for(int i=0;i<BATCHES;++i)free.add(new Batch(batchSize));
+		Reader reader = new Reader(inputs, free, full);
+		Thread thread = new Thread(reader, "Trainer-reader");
+		thread.setDaemon(true);
+		thread.start();
+
+		long samples = 0;
+		double lossSum = 0;
+		try
+		{
+			while(true)
+			{
+				Batch batch = full.take();
+				if(batch.size == 0)break;
+				lossSum += predict(batch, pool);
+				update(batch);
+				samples += batch.size;
+				free.put(batch);
+			}
+		}
+		finally
+		{
+			thread.interrupt();
+		}
+		thread.join();
+		if(reader.error != null)throw reader.error;
+		return new Progress(epoch, samples, samples > 0 ? lossSum / samples : 0, System.nanoTime() - start);
+	}
+	/**
+		バッチを分けて、特徴の取り出しと予測と誤差の計算を並列にします
+		@param batch バッチ
+		@param pool 計算するスレッド
+		@return double 損失の和
+		@throws InterruptedException 割り込まれたとき
+	*/
+	private double predict(Batch batch, ExecutorService pool) throws InterruptedException
+	{
+		int chunks = Math.min(threads, batch.size);
+		List<Callable<Double>> tasks = new ArrayList<>(chunks);
+		for(int c=0;c<chunks;++c)
+		{
+			final int from = (int)((long)batch.size * c / chunks);
+			final int to = (int)((long)batch.size * (c + 1) / chunks);
+			tasks.add(() -> predict(batch, from, to));
+		}
+		double sum = 0;
+		for(Future<Double> f : pool.invokeAll(tasks))
+		{
+			try
+			{
+				sum += f.get();
+			}
+			catch(ExecutionException e)
+			{
+				throw new IllegalStateException(e.getCause());
+			}
+		}
+		return sum;
+	}
+	/**
+		バッチの一部の特徴を取り出して誤差を計算します<br>
+		重みは読むだけなので、スレッドの間で同期しません
+		@param batch バッチ
+		@param from 最初のサンプル
+		@param to 最後のサンプルの次
+		@return double 損失の和
+	*/
+	private double predict(Batch batch, int from, int to)
+	{
+		int[] indices = new int[Pattern.COUNT];
+		double sum = 0;
+		for(int j=from;j<to;++j)
+		{
+			long black = batch.black[j];
+			long white = batch.white[j];
+			Pattern.indices(black, white, indices);
+			int base = Evaluator.phase(Long.bitCount(black | white) - 4) * Evaluator.PHASE_SIZE;
+			int f = j * FEATURES;
+			double v = 0;
+			for(int i=0;i<Pattern.COUNT;++i)
+			{
+				int w = base + Pattern.OFFSET_OF[i] + indices[i];
+				batch.features[f + i] = w;
+				v += weights[w];
+			}
+			int mobility = Long.bitCount(BitBoard.getReversiblePos(black, white))
+				- Long.bitCount(BitBoard.getReversiblePos(white, black));
+			batch.features[f + Pattern.COUNT] = base + Evaluator.MOBILITY;
+			batch.mobility[j] = mobility;
+			v += weights[base + Evaluator.MOBILITY] * mobility;
+
+			double t = batch.target[j];
+			if(loss == Loss.SQUARED)
+			{
+				double r = t - v;
+				batch.residual[j] = (float)r;
+				sum += r * r;
+			}
+			else
+			{
+				double p = sigmoid(v);
+				double q = t;
+				// 勝率の傾きは評価値0で1/(4*LOGISTIC_SCALE)なので、評価値の単位に戻して二乗誤差と同じ学習率で動くようにする
+				batch.residual[j] = (float)((q - p) * 4 * LOGISTIC_SCALE);
+				sum -= q * Math.log(Math.max(p, 1e-12)) + (1 - q) * Math.log(Math.max(1 - p, 1e-12));
+			}
+		}
+		return sum;
+	}
+	/**
+		サンプルから学習の目標を計算します
+		@param sample サンプル
+		@return float 二乗誤差なら黒から見た石差の100倍、ロジスティック回帰なら黒の勝率
+	*/
+	private float target(Sample sample)
+	{
+		if(loss == Loss.SQUARED)return (float)sample.target(lambda);
+		// 勝ち負けは1か0、探索の評価値は勝率にして混ぜる
+		double outcome = Integer.signum(sample.result) * 0.5 + 0.5;
+		if(sample.score == Sample.NO_SCORE || lambda == 0)return (float)outcome;
+		return (float)(lambda * sigmoid(sample.score) + (1 - lambda) * outcome);
+	}
+	/**
+		評価値を勝率にします
+		@param v 評価値
+		@return double 勝率
+	*/
+	private static double sigmoid(double v)
+	{
+		return 1 / (1 + Math.exp(-v / LOGISTIC_SCALE));
+	}
+	/**
+		バッチの勾配を集めて、出てきた重みだけを動かします
+		@param batch 予測したバッチ
+	*/
+	private void update(Batch batch)
+	{
+		int n = batch.size * FEATURES;
+		for(int j=0;j<batch.size;++j)
+		{
+			float r = batch.residual[j];
+			int f = j * FEATURES;
+			for(int i=0;i<Pattern.COUNT;++i)
+			{
+				int w = batch.features[f + i];
+				gradient[w] += r;
+				norm[w] += 1;
+			}
+			int m = batch.mobility[j];
+			int w = batch.features[f + Pattern.COUNT];
+			gradient[w] += r * m;
+			norm[w] += m * m;
+		}
+		for(int i=0;i<n;++i)
+		{
+			int w = batch.features[i];
+			if(norm[w] == 0)continue;
+			weights[w] += (float)(rate * gradient[w] / norm[w]);
+			gradient[w] = 0;
+			norm[w] = 0;
+		}
+	}
+	/**
+		学習した重みを丸めて評価関数にします
+		@return Evaluator 評価関数
+	*/
+	private Evaluator toEvaluator()
+	{
+		short[] w = new short[weights.length];
+		for(int i=0;i<w.length;++i)
+		{
+			w[i] = (short)Math.max(Short.MIN_VALUE, Math.min(Short.MAX_VALUE, Math.round(weights[i])));
+		}
+		return new Evaluator(ShortBuffer.wrap(w));
+	}
+
+	/**
+		読み込んだサンプルと、計算した特徴と誤差
+	*/
+	private static final class Batch
+	{
+		/** 黒い石 */
+		final long[] black;
+		/** 白い石 */
+		final long[] white;
+		/** 目標 */
+		final float[] target;
+		/** 特徴の重みの位置 サンプルごとにFEATURES個 */
+		final int[] features;
+		/** 合法手の数の差 */
+		final int[] mobility;
+		/** 誤差 */
+		final float[] residual;
+		/** サンプル数 0なら入力の終わり */
+		int size;
+
+		Batch(int capacity)
+		{
+			black = new long[capacity];
+			white = new long[capacity];
+			target = new float[capacity];
+			features = new int[capacity * FEATURES];
+			mobility = new int[capacity];
+			residual = new float[capacity];
+		}
+	}
+
+	/**
+		ファイルを順に読んでバッチを埋めるスレッド<br>
+		空いたバッチを待ち、埋めたものを渡します 最後にサンプル数0のバッチを渡します
+	*/
+	private final class Reader implements Runnable
+	{
+		/** 入力 */
+		private final List<Path> inputs;
+		/** 空いたバッチ */
+		private final BlockingQueue<Batch> free;
+		/** 埋めたバッチ */
+		private final BlockingQueue<Batch> full;
+		/** 読めなかったときの例外 */
+		volatile IOException error;
+
+		Reader(List<Path> inputs, BlockingQueue<Batch> free, BlockingQueue<Batch> full)
+		{
+			this.inputs = inputs;
+			this.free = free;
+			this.full = full;
+		}
+		@Override
+		public void run()
+		{
+			try
+			{
+				Sample sample = new Sample();
+				Batch batch = free.take();
+				batch.size = 0;
+				try
+				{
+					for(Path path : inputs)
+					{
+						try(SampleReader reader = new SampleReader(path))
+						{
+							while(reader.next(sample))
+							{
+								int j = batch.size++;
+								batch.black[j] = sample.black;
+								batch.white[j] = sample.white;
+								batch.target[j] = target(sample);
+								if(batch.size == batch.black.length)
+								{
+									full.put(batch);
+									batch = free.take();
+									batch.size = 0;
+								}
+							}
+						}
+					}
+				}
+				catch(IOException e)
+				{
+					error = e;
+				}
+				if(batch.size > 0)
+				{
+					full.put(batch);
+					batch = free.take();
+					batch.size = 0;
+				}
+				full.put(batch);
+			}
+			catch(InterruptedException e)
+			{
+				// 学習側が止まった
+			}
+		}
+	}
+
+	/**
+		1周の結果
+	*/
+	public static final class Progress
+	{
+		/** 何周目か */
+		public final int epoch;
+		/** サンプル数 */
+		public final long samples;
+		/** サンプルあたりの損失 二乗誤差なら石差の100倍の二乗 */
+		public final double loss;
+		/** かかった時間(ナノ秒) */
+		public final long elapsed;
+
+		Progress(int epoch, long samples, double loss, long elapsed)
+		{
+			this.epoch = epoch;
+			this.samples = samples;
+			this.loss = loss;
+			this.elapsed = elapsed;
+		}
+		/**
+			1秒あたりのサンプル数を返します
+			@return double サンプル数/秒
+		*/
+		public double getSamplesPerSecond()
+		{
+			return elapsed > 0 ? samples * 1e9 / elapsed : 0;
+		}
+		@Override
+		public String toString()
+		{
+			return String.format("epoch:%d samples:%d loss:%.4f (%.0f samples/s)", epoch, samples, loss, getSamplesPerSecond());
+		}
+	}
+}
@@ -0,0 +1,175 @@
+package red.vivid.reversi;
+
+/**
+	置換表<br>
+	1エントリを2つのlongで表し、1つ目にキーとデータのXOR、2つ目にデータを書き込みます<br>
+	読むときにXORを取り直してキーと一致しなければ無効とするので、ロックなしで複数のスレッドから共有できます<br>
+	1バケットは深さ優先のエントリと常に上書きするエントリの2つからなります<br>
+	キーにはBitBoard.getHash(color)の値を使います
+	@author vividorange
+*/
+public class TranspositionTable
+{
+	/** 上限値(fail-low) */
+	public static final int UPPER = 1;
+	/** 下限値(fail-high) */
+	public static final int LOWER = 2;
+	/** 正確な値 */
+	public static final int EXACT = 3;
+	/** 最善手なし */
+	public static final int NO_MOVE = 64;
+
+	/** 1バケットのlongの数 */
+	private static final int BUCKET = 4;
+
+	private static final int MOVE_SHIFT = 0;
+	private static final int DEPTH_SHIFT = 7;
+	private static final int BOUND_SHIFT = 15;
+	private static final int SCORE_SHIFT = 17;
+	private static final int AGE_SHIFT = 33;
+
+	/** エントリ */
+	private final long[] table;
+	/** バケット番号のマスク */
+	private final long mask;
+	/** 探索の世代 */
+	private volatile int age;
+
+	/**
+		サイズを指定して置換表を生成します
+		@param megabytes サイズ(MB) 2の冪に切り下げます
+	*/
+	public TranspositionTable(int megabytes)
+	{
+		long bytes = Math.max(1, megabytes) * (1L << 20);
+		long buckets = Long.highestOneBit(bytes / (BUCKET * 8));
+		// 配列の長さの上限に収める
+		buckets = Math.min(buckets, 1L << 28);
+		table = new long[(int)(buckets * BUCKET)];
+		mask = buckets - 1;
+	}
+	/**
+		新しい探索を始めます<br>
+		前の探索の世代のエントリは深さに関係なく置き換えられるようになります
+	*/
+	public void newSearch()
+	{
+		age = (age + 1) & 0xff;
+	}
+	/**
+		すべてのエントリを消します
+	*/
+	public void clear()
+	{
+		java.util.Arrays.fill(table, 0);
+	}
+	/**
+		キーに対応するデータを探します
+		@param key ハッシュ値
+		@return long パックされたデータ 見つからなければ0
+	*/
+	public long probe(long key)
+	{
+		int i = (int)(key & mask) * BUCKET;
+		for(int j=0;j<BUCKET;j+=2)
+		{
+			long data = table[i + j + 1];
+			if((table[i + j] ^ data) == key && data != 0)return data;
+		}
+		return 0;
+	}
+	/**
+		エントリを書き込みます
+		@param key ハッシュ値
+		@param move 最善手のビット位置(なければNO_MOVE)
+		@param depth 残りの深さ
+		@param bound UPPER, LOWER, EXACTのいずれか
+		@param score 評価値
+	*/
+	public void store(long key, int move, int depth, int bound, int score)
+	{
+		int i = (int)(key & mask) * BUCKET;
+		int a = age;
+		// 同じ局面があれば深さが足りるときだけ上書きする
+		for(int j=0;j<BUCKET;j+=2)
+		{
+			long old = table[i + j + 1];
+			if((table[i + j] ^ old) == key && old != 0)
+			{
+				if(depth < depthOf(old) && bound != EXACT && ageOf(old) == a)return;
+				if(move == NO_MOVE)move = moveOf(old);
+				write(i + j, key, pack(move, depth, bound, score, a));
+				return;
+			}
+		}
+		// 深さ優先のエントリより深いか古ければ、そのエントリを常に上書きする側へ移す
+		long first = table[i + 1];
+		long data = pack(move, depth, bound, score, a);
+		if(first == 0 || ageOf(first) != a || depth >= depthOf(first))
+		{
+			if(first != 0)
+			{
+				table[i + 2] = table[i];
+				table[i + 3] = first;
+			}
+			write(i, key, data);
+		}
+		else
+		{
+			write(i + 2, key, data);
+		}
+	}
+	private void write(int i, long key, long data)
+	{
+		table[i] = key ^ data;
+		table[i + 1] = data;
+	}
+	private static long pack(int move, int depth, int bound, int score, int age)
+	{
+		return ((long)move << MOVE_SHIFT)
+			| ((long)Math.min(depth, 255) << DEPTH_SHIFT)
+			| ((long)bound << BOUND_SHIFT)
+			| ((long)(score & 0xffff) << SCORE_SHIFT)
+			| ((long)age << AGE_SHIFT);
+	}
+	/**
+		データから最善手を取り出します
+		@param data パックされたデータ
+		@return int 最善手のビット位置(なければNO_MOVE)
+	*/
+	public static int moveOf(long data)
+	{
+		return (int)(data >>> MOVE_SHIFT) & 0x7f;
+	}
+	/**
+		データから深さを取り出します
+		@param data パックされたデータ
+		@return int 深さ
+	*/
+	public static int depthOf(long data)
+	{
+		return (int)(data >>> DEPTH_SHIFT) & 0xff;
+	}
+	/**
+		データから評価値の種類を取り出します
+		@param data パックされたデータ
+		@return int UPPER, LOWER, EXACTのいずれか
+	*/
+	public static int boundOf(long data)
+	{
+		return (int)(data >>> BOUND_SHIFT) & 3;
+	}
+	/**
+		データから評価値を取り出します
+		@param data パックされたデータ
+		@return int 評価値
+	*/
+	public static int scoreOf(long data)
+	{
+		return (short)(data >>> SCORE_SHIFT);
+	}
+	private static int ageOf(long data)
+	{
+		return (int)(data >>> AGE_SHIFT) & 0xff;
+	}
+}
@@ -0,0 +1,261 @@
+package red.vivid.reversi;
+
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+	Young Brothers Wait Conceptによる並列アルファベータ探索<br>
+	長男の手を直列に読んでから、弟たちの手をForkJoinPoolのタスクとして並列に読みます<br>
+	弟の手でベータカットが起きると、そのノードより下のタスクはすべて打ち切られます
+	@author vividorange
+*/
+class YBWCSearch
+{
+	/** この深さ未満は直列に読む */
+	private static final int SPLIT_DEPTH = 4;
+
+	/** タスクを実行するプール */
+	private final ForkJoinPool pool;
+	/** 探索を打ち切る時刻(System.nanoTime) */
+	private final long deadline;
+	/** 反復深化の最大の深さ */
+	private final int maxDepth;
+	/** 置換表 */
+	private final TranspositionTable tt;
+	/** 時間切れか */
+	private volatile boolean timeUp;
+	/** ワーカースレッドごとの直列探索 探索をまたいで使い回します */
+	private final ThreadLocal<Leaf> leaves;
+	/** 探索したノード数 */
+	private final LongAdder nodeCount = new LongAdder();
+
+	/** 探索したノード数 */
+	long nodes;
+	/** 完了した深さ */
+	int depth;
+	/** 最善手のビット位置(-1は未決定) */
+	int bestPos = -1;
+	/** 最善手の評価値 */
+	int bestScore;
+
+	/**
+		探索を生成します
+		@param pool タスクを実行するプール
+		@param deadline 探索を打ち切る時刻(System.nanoTime)
+		@param maxDepth 反復深化の最大の深さ
+		@param tt 置換表
+		@param leaves ワーカースレッドごとの直列探索 newLeavesで同じ置換表から作ったもの
+	*/
+	YBWCSearch(ForkJoinPool pool, long deadline, int maxDepth, TranspositionTable tt, ThreadLocal<Leaf> leaves)
+	{
+		this.pool = pool;
+		this.deadline = deadline;
+		this.maxDepth = maxDepth;
+		this.tt = tt;
+		this.leaves = leaves;
+	}
+	/**
+		ワーカースレッドごとの直列探索を作るThreadLocalを返します<br>
+		置換表と評価関数が変わらない間は、同じものを探索をまたいで渡します
+		@param tt 置換表
+		@param evaluator 評価関数
+		@return ThreadLocal ワーカースレッドごとの直列探索
+	*/
+	static ThreadLocal<Leaf> newLeaves(TranspositionTable tt, Evaluator evaluator)
+	{
+		return ThreadLocal.withInitial(() -> new Leaf(tt, evaluator));
+	}
+	/**
+		時間切れか最大の深さに達するまで反復深化で探索します
+		@param board 探索するボード
+		@param color 手番の色
+	*/
+	void run(BitBoard board, boolean color)
+	{
+		long mobility = board.getMobility(color);
+		if(mobility == 0)return;
+		bestPos = Long.numberOfTrailingZeros(mobility);
+		int empties = board.getEmptyCount();
+
+		for(int d=1;d<=maxDepth;++d)
+		{
+			Node root = new Node(board.copy(), color, d, -Search.INF, Search.INF, false, null);
+			int score = pool.invoke(root);
+			if(timeUp)break;
+			if(root.bestMove != TranspositionTable.NO_MOVE)bestPos = root.bestMove;
+			bestScore = score;
+			depth = d;
+			if(d >= empties)break;
+		}
+		nodes = nodeCount.sum();
+	}
+
+	/**
+		1つの局面を読むタスク
+	*/
+	private final class Node extends RecursiveTask<Integer>
+	{
+		private static final long serialVersionUID = 1L;
+
+		private final BitBoard board;
+		private final boolean color;
+		private final int d;
+		private final int alpha;
+		private final int beta;
+		private final boolean passed;
+		/** 親のノード */
+		private final Node parent;
+		/** 子で起きたカットによって、このノードより下を打ち切るか */
+		private volatile boolean cut;
+		/** 最善手 */
+		int bestMove = TranspositionTable.NO_MOVE;
+
+		Node(BitBoard board, boolean color, int d, int alpha, int beta, boolean passed, Node parent)
+		{
+			this.board = board;
+			this.color = color;
+			this.d = d;
+			this.alpha = alpha;
+			this.beta = beta;
+			this.passed = passed;
+			this.parent = parent;
+		}
+		/**
+			時間切れか、祖先で起きたカットによって打ち切られたかを返します
+			@return boolean 打ち切られたか
+		*/
+		boolean cancelled()
+		{
+			if(timeUp)return true;
+			for(Node n = parent; n != null; n = n.parent)
+			{
+				if(n.cut)return true;
+			}
+			if(System.nanoTime() - deadline > 0)
+			{
+				timeUp = true;
+				return true;
+			}
+			return false;
+		}
+		@Override
+		protected Integer compute()
+		{
+			nodeCount.increment();
+			if(cancelled())return 0;
+			long mobility = board.getMobility(color);
+			if(mobility == 0)
+			{
+				if(passed)return Search.finalScore(board, color);
+				return -new Node(board, !color, d, -beta, -alpha, true, parent).compute();
+			}
+			Leaf leaf = leaves.get();
+			if(leaf.owner != YBWCSearch.this)
+			{
+				// このスレッドでこの探索を初めて手伝う
+				leaf.owner = YBWCSearch.this;
+				leaf.start(deadline, maxDepth);
+			}
+			boolean root = parent == null;
+			if(d < SPLIT_DEPTH && !root)
+			{
+				leaf.node = this;
+				long before = leaf.nodes;
+				int score = leaf.search(board, color, d, alpha, beta);
+				nodeCount.add(leaf.nodes - before);
+				return leaf.aborted ? 0 : score;
+			}
+
+			long key = Search.key(board, color);
+			long data = tt.probe(key);
+			int ttMove = data != 0 ? TranspositionTable.moveOf(data) : TranspositionTable.NO_MOVE;
+			int a = alpha;
+			if(data != 0 && TranspositionTable.depthOf(data) >= d && !root)
+			{
+				int v = TranspositionTable.scoreOf(data);
+				int bound = TranspositionTable.boundOf(data);
+				if(bound == TranspositionTable.EXACT)return v;
+				if(bound == TranspositionTable.LOWER && v >= beta)return v;
+				if(bound == TranspositionTable.UPPER && v <= a)return v;
+			}
+			int n = leaf.order(board, color, mobility, d, 0, ttMove);
+			int[] list = java.util.Arrays.copyOf(leaf.moves[0], n);
+
+			// 長男を直列に読む
+			int best = -child(list[0], a).compute();
+			if(cancelled())return 0;
+			bestMove = list[0];
+			if(best > a)a = best;
+			if(a < beta && n > 1)
+			{
+				// 弟たちを並列に読む
+				Node[] brothers = new Node[n - 1];
+				for(int i=1;i<n;++i)
+				{
+					brothers[i - 1] = child(list[i], a);
+					brothers[i - 1].fork();
+				}
+				for(int i=0;i<brothers.length;++i)
+				{
+					int score = -brothers[i].join();
+					if(cut)continue;
+					if(score > best)
+					{
+						best = score;
+						bestMove = list[i + 1];
+						if(score >= beta)
+						{
+							// 残りの弟を打ち切る
+							cut = true;
+						}
+					}
+				}
+				if(cancelled())return 0;
+			}
+			int bound = best >= beta ? TranspositionTable.LOWER
+				: best > alpha ? TranspositionTable.EXACT : TranspositionTable.UPPER;
+			tt.store(key, bestMove, d, bound, best);
+			return best;
+		}
+		/**
+			子のノードを作ります
+			@param k 石を置くビット位置
+			@param a 現在の下限
+			@return Node 子のノード
+		*/
+		private Node child(int k, int a)
+		{
+			long pos = 1L << k;
+			BitBoard next = board.copy();
+			next.reverse(color, pos, board.toRev(color, pos));
+			return new Node(next, !color, d - 1, -beta, -a, false, this);
+		}
+	}
+
+	/**
+		浅いところを直列に読む探索<br>
+		時間切れに加えて、読んでいるノードの祖先が打ち切られたときにも止まります
+	*/
+	static final class Leaf extends Search
+	{
+		/** 最後に手伝った探索 */
+		private YBWCSearch owner;
+		/** 読んでいるノード */
+		private Node node;
+
+		/**
+			直列探索を生成します
+			@param tt 置換表
+			@param evaluator 評価関数
+		*/
+		private Leaf(TranspositionTable tt, Evaluator evaluator)
+		{
+			super(tt, evaluator);
+		}
+		@Override
+		boolean interrupted()
+		{
+			return node.cancelled();
+		}
+	}
+}
@@ -1 +1,3 @@
-start run.bat
\ No newline at end of file
+cd src
+java TournamentReversi 100 AI RandomAI
+pause
\ No newline at end of file